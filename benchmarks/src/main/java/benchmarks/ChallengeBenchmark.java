@@ -0,0 +1,93 @@
+package benchmarks;
+
+import challenges.ChallengeEvaluator;
+import challenges.ChallengeEvaluators;
+import challenges.WeeklySnapshot;
+import data.entities.Challenge;
+import data.entities.DailyConsumption;
+import data.entities.User;
+import data.enums.ChallengeType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the weekly snapshot of an user from the daily consumption and checking a set of challenges.
+ * MAXPERCENTAGE is left out because it needs the drinks of the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChallengeBenchmark {
+
+    private static final ChallengeType[] TYPES =
+            {ChallengeType.MAXWEEK, ChallengeType.MAXDAY, ChallengeType.MAXDAYS, ChallengeType.MAXGAG};
+
+    private User user;
+    private Date start;
+    private Date end;
+    private List<DailyConsumption> consumptions;
+    private WeeklySnapshot snapshot;
+    private List<Challenge> challenges;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        random = new Random(1);
+        user = new User("benchmark", "benchmark@example.com", null);
+        end = new Date();
+        start = new Date(end.getTime() - TimeUnit.DAYS.toMillis(7));
+        consumptions = new ArrayList<>();
+        for (int day = 0; day <= 7; day++) {
+            DailyConsumption consumption = new DailyConsumption(user,
+                    DailyConsumption.dayOf(new Date(start.getTime() + TimeUnit.DAYS.toMillis(day))));
+            consumption.setDrinkCount(random.nextInt(8));
+            consumption.setGrams(consumption.getDrinkCount() * 14.0);
+            consumptions.add(consumption);
+        }
+        snapshot = new WeeklySnapshot(user, start, end, consumptions);
+        challenges = new ArrayList<>();
+        for (ChallengeType type : TYPES) {
+            Challenge challenge = new Challenge();
+            challenge.getParameter().addAll(ChallengeEvaluators.get(type).createParameters(snapshot, random));
+            challenges.add(challenge);
+        }
+    }
+
+    @Benchmark
+    public WeeklySnapshot snapshot() {
+        return new WeeklySnapshot(user, start, end, consumptions);
+    }
+
+    @Benchmark
+    public void check(Blackhole blackhole) {
+        for (int i = 0; i < TYPES.length; i++) {
+            blackhole.consume(ChallengeEvaluators.get(TYPES[i]).isSuccess(challenges.get(i), snapshot));
+        }
+    }
+
+    @Benchmark
+    public void generate(Blackhole blackhole) {
+        for (ChallengeType type : TYPES) {
+            ChallengeEvaluator evaluator = ChallengeEvaluators.get(type);
+            blackhole.consume(evaluator.createParameters(snapshot, random));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import helper.DayBuckets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bucketing the drinks of a week per day. The bytes per operation (gc.alloc.rate.norm) must not grow
+ * with the number of drinks, only the arrays of the buckets are allocated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DayBucketsBenchmark {
+
+    @Param({"10", "1000"})
+    private int drinks;
+
+    private final ZoneId zone = ZoneId.of("Europe/Vienna");
+    private long start;
+    private long end;
+    private long[] times;
+    private double[] grams;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        end = System.currentTimeMillis();
+        start = end - TimeUnit.DAYS.toMillis(7);
+        times = new long[drinks];
+        grams = new double[drinks];
+        for (int i = 0; i < drinks; i++) {
+            times[i] = start + (long) (random.nextDouble() * (end - start));
+            grams[i] = 8 + random.nextInt(20);
+        }
+        Arrays.sort(times);
+    }
+
+    @Benchmark
+    public DayBuckets buckets() {
+        DayBuckets buckets = new DayBuckets(zone, start, end);
+        for (int i = 0; i < times.length; i++) {
+            buckets.add(times[i], grams[i]);
+        }
+        return buckets;
+    }
+}
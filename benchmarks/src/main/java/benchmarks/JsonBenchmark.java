@@ -0,0 +1,76 @@
+package benchmarks;
+
+import data.entities.Alcohol;
+import data.entities.Drink;
+import data.entities.User;
+import data.enums.AlcoholType;
+import helper.JsonHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The serialization of a page of drinks and of an alcohol catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"50", "500"})
+    private int size;
+
+    private List<Drink> drinks;
+    private List<Alcohol> alcohols;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        User user = new User("benchmark", "benchmark@example.com", null);
+        AlcoholType[] types = AlcoholType.values();
+        alcohols = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Alcohol alcohol = new Alcohol(types[i % types.length], "Alcohol " + i,
+                    4 + random.nextInt(400) / 10f, 20 + random.nextInt(480));
+            alcohol.setId(i + 1);
+            alcohols.add(alcohol);
+        }
+        drinks = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            Drink drink = new Drink(user, alcohols.get(random.nextInt(size)),
+                    new Date(now - TimeUnit.MINUTES.toMillis(i * 37)),
+                    BigDecimal.valueOf(16.37 + random.nextDouble()), BigDecimal.valueOf(48.2 + random.nextDouble()));
+            drink.setId(i + 1);
+            drinks.add(drink);
+        }
+    }
+
+    @Benchmark
+    public byte[] drinks() {
+        return JsonHelper.toBytes(gen -> JsonHelper.writeArray(gen, drinks, Drink::toJson));
+    }
+
+    @Benchmark
+    public byte[] alcohols() {
+        return JsonHelper.toBytes(gen -> JsonHelper.writeArray(gen, alcohols, Alcohol::toJson));
+    }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import helper.JwtHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating a token on login and resolving it on every request to /manage (from the cache).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtHelper jwtHelper;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtHelper = new JwtHelper();
+        token = jwtHelper.create(42);
+    }
+
+    @Benchmark
+    public String create() {
+        return jwtHelper.create(42);
+    }
+
+    @Benchmark
+    public long getUserId() {
+        return jwtHelper.getUserId(token);
+    }
+}
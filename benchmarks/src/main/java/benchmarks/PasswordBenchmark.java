@@ -0,0 +1,62 @@
+package benchmarks;
+
+import helper.PasswordHasher;
+import org.bouncycastle.util.encoders.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The password check of a login with the current and the legacy format and the hashing on registration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+
+    private static final String PASSWORD = "Secret1234";
+
+    private String hash;
+    private String legacyHash;
+    private String legacySalt;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        hash = PasswordHasher.hash(PASSWORD);
+        byte[] salt = new byte[16];
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(salt);
+        legacyHash = new String(Hex.encode(md.digest(PASSWORD.getBytes(StandardCharsets.UTF_8))));
+        legacySalt = new String(Hex.encode(salt));
+    }
+
+    @Benchmark
+    public String hash() {
+        return PasswordHasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return PasswordHasher.verify(PASSWORD, hash, null);
+    }
+
+    @Benchmark
+    public boolean verifyLegacy() {
+        return PasswordHasher.verify(PASSWORD, legacyHash, legacySalt);
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import helper.UserValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The regular expressions that validate a registration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    @Param({"valid", "invalid"})
+    private String input;
+
+    private String email;
+    private String password;
+
+    @Setup
+    public void setup() {
+        boolean valid = input.equals("valid");
+        email = valid ? "first.last@example.com" : "first.last@example";
+        password = valid ? "Secret1234" : "secretsecret";
+    }
+
+    @Benchmark
+    public boolean email() {
+        return UserValidator.validateEmail(email);
+    }
+
+    @Benchmark
+    public boolean password() {
+        return UserValidator.validatePassword(password);
+    }
+}
@@ -0,0 +1,110 @@
+package loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latencies and errors of every endpoint, recorded by all virtual users at once.
+ * Nothing is recorded until {@link #start()} is called, so the warm-up does not distort the percentiles.
+ */
+public class LatencyStats {
+
+    /**
+     * The highest latency that can be recorded, longer requests are recorded with this latency.
+     */
+    private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile boolean recording;
+    private long startNanos;
+    private long stopNanos;
+
+    /**
+     * Records a request.
+     *
+     * @param endpoint the name of the endpoint
+     * @param nanos    the latency of the request
+     * @param error    true if the request failed or returned an unexpected status
+     */
+    public void record(String endpoint, long nanos, boolean error) {
+        if (!recording) {
+            return;
+        }
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+        stats.histogram.recordValue(Math.min(nanos, MAX_NANOS));
+        if (error) {
+            stats.errors.increment();
+        }
+    }
+
+    public synchronized void start() {
+        startNanos = System.nanoTime();
+        recording = true;
+    }
+
+    public synchronized void stop() {
+        recording = false;
+        stopNanos = System.nanoTime();
+    }
+
+    /**
+     * Writes the throughput and the latency percentiles of every endpoint as a table.
+     * The lines of the header start with #, so the file can be read as whitespace separated values.
+     *
+     * @param out    the writer of the report
+     * @param header the lines of the header, e.g. the settings of the run
+     */
+    public synchronized void writeReport(Writer out, Iterable<String> header) throws IOException {
+        double seconds = (stopNanos - startNanos) / 1e9;
+        PrintWriter writer = new PrintWriter(out);
+        for (String line : header) {
+            writer.println("# " + line);
+        }
+        writer.printf("# measured: %.1f s%n", seconds);
+        String format = "%-14s %10s %8s %10s %10s %10s %10s %10s%n";
+        writer.printf(format, "endpoint", "requests", "errors", "req/s", "p50_ms", "p99_ms", "p999_ms", "max_ms");
+
+        Histogram total = new Histogram(MAX_NANOS, 3);
+        long totalErrors = 0;
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Histogram histogram = entry.getValue().histogram.copy();
+            long errors = entry.getValue().errors.sum();
+            writeRow(writer, format, entry.getKey(), histogram, errors, seconds);
+            total.add(histogram);
+            totalErrors += errors;
+        }
+        writeRow(writer, format, "total", total, totalErrors, seconds);
+        writer.flush();
+    }
+
+    private static void writeRow(PrintWriter writer, String format, String name,
+                                 Histogram histogram, long errors, double seconds) {
+        writer.printf(format, name,
+                histogram.getTotalCount(),
+                errors,
+                String.format("%.1f", histogram.getTotalCount() / seconds),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    private static class Endpoint {
+        // 3 significant digits
+        private final Histogram histogram = new ConcurrentHistogram(MAX_NANOS, 3);
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,174 @@
+package loadtest;
+
+import helper.ApplicationBinder;
+import helper.Config;
+import helper.EntityManagerHelper;
+import mail.MailDispatcher;
+import org.glassfish.grizzly.http.server.HttpServer;
+import repositories.SeedRepository;
+import repositories.UserAvailability;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the server in this process against an in-memory H2 database and a {@link SmtpStub} and drives it with
+ * concurrent {@link VirtualUser}s. The throughput and the latency percentiles of every endpoint are written
+ * to a report file, so the results of different builds can be compared.
+ * <p>
+ * Options (every option is optional):
+ * <ul>
+ * <li>--users: the number of concurrent virtual users (default 50)</li>
+ * <li>--duration: the seconds that are measured (default 60)</li>
+ * <li>--warmup: the seconds before the measurement starts (default 15)</li>
+ * <li>--think: the maximum milliseconds a virtual user waits between two requests (default 0)</li>
+ * <li>--report: the file of the report (default loadtest-report.txt)</li>
+ * </ul>
+ * The config of the server can be changed with system properties (see {@link Config}), e.g.
+ * -Dbooze.pool_max_size=20. The MySQL database, the SMTP server and the rate limits of the config file are
+ * always replaced unless they are set this way.
+ */
+public class LoadTest {
+
+    private static final Logger LOG = Logger.getLogger(LoadTest.class.getName());
+
+    public static void main(String[] args) throws Exception {
+        int users = 50;
+        int duration = 60;
+        int warmup = 15;
+        long think = 0;
+        Path report = Paths.get("loadtest-report.txt");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--users":
+                    users = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--duration":
+                    duration = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--think":
+                    think = Long.parseLong(args[i + 1]);
+                    break;
+                case "--report":
+                    report = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        SmtpStub smtp = new SmtpStub();
+        int port = freePort();
+        configure(smtp.getPort());
+        // the server logs every request, which would measure the console instead of the server
+        Logger.getLogger("").setLevel(Level.WARNING);
+        LOG.setLevel(Level.INFO);
+
+        // the same startup as Main, only the seed data is always loaded
+        SeedRepository seedRepo = new SeedRepository();
+        seedRepo.loadAlcohol();
+        seedRepo.loadTemplates();
+        UserAvailability.build();
+        EntityManagerHelper.close();
+
+        ApplicationBinder binder = new ApplicationBinder();
+        HttpServer server = startServer(binder, URI.create("http://localhost:" + port + "/booze"));
+        binder.start();
+
+        // every virtual user keeps its own connection alive
+        System.setProperty("http.maxConnections", String.valueOf(users));
+        LatencyStats stats = new LatencyStats();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup + duration);
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        for (int i = 0; i < users; i++) {
+            executor.execute(new VirtualUser("http://localhost:" + port + "/booze", i, stats, end, think));
+        }
+        LOG.info(String.format("Load test with %d users started, warming up for %d s", users, warmup));
+        TimeUnit.SECONDS.sleep(warmup);
+        stats.start();
+        TimeUnit.SECONDS.sleep(duration);
+        stats.stop();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        MailDispatcher dispatcher = binder.getMailDispatcher();
+        List<String> header = new ArrayList<>();
+        header.add("dr-booze load test " + Instant.now());
+        header.add(String.format("users: %d, warmup: %d s, think: %d ms, java: %s",
+                users, warmup, think, System.getProperty("java.version")));
+        header.add(String.format("emails: %d sent, %d queued, %d received by the stub",
+                dispatcher.getSent(), dispatcher.getQueueDepth(), smtp.getReceived()));
+        try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            stats.writeReport(writer, header);
+        }
+        Writer console = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        stats.writeReport(console, header);
+        LOG.info("Report written to " + report.toAbsolutePath());
+
+        try {
+            server.shutdown(10, TimeUnit.SECONDS).get();
+        } catch (InterruptedException | ExecutionException e) {
+            server.shutdownNow();
+        }
+        binder.shutdown();
+        smtp.close();
+    }
+
+    /**
+     * Replaces the database and the SMTP server of the config file and lifts the rate limits,
+     * unless they are set as system properties already. Has to run before the config is read.
+     */
+    private static void configure(int smtpPort) {
+        setDefault("jdbc_url", "jdbc:h2:mem:boozedb;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        setDefault("jdbc_user", "sa");
+        setDefault("jdbc_password", "");
+        setDefault("eclipselink.logging.level", "WARNING");
+        setDefault("eclipselink.logging.level.sql", "WARNING");
+        setDefault("email_host", "localhost");
+        setDefault("email_port", String.valueOf(smtpPort));
+        setDefault("email_starttls", "false");
+        for (String route : new String[]{"auth/login", "auth/register", "auth/available", "auth", "manage"}) {
+            setDefault("rate_limit." + route, "1000000,1000000");
+        }
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(Config.OVERRIDE_PREFIX + key) == null) {
+            System.setProperty(Config.OVERRIDE_PREFIX + key, value);
+        }
+    }
+
+    /**
+     * Calls Main.startServer, Main is in the default package and cannot be imported.
+     */
+    private static HttpServer startServer(ApplicationBinder binder, URI uri) throws ReflectiveOperationException {
+        Method startServer = Class.forName("Main").getMethod("startServer", ApplicationBinder.class, URI.class);
+        return (HttpServer) startServer.invoke(null, binder, uri);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
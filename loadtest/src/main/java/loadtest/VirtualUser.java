@@ -0,0 +1,179 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single client of the server.
+ * The user registers and logs in once and then calls the endpoints in a random order until the test ends:
+ * <ul>
+ * <li>30% getDrinks: the latest drinks</li>
+ * <li>25% addDrink: a drink of the last hours</li>
+ * <li>20% getAlcohols: the catalog of a random type</li>
+ * <li>15% challenges: the challenges of the user</li>
+ * <li>10% login: a new token</li>
+ * </ul>
+ */
+public class VirtualUser implements Runnable {
+
+    private static final String[] ALCOHOL_TYPES = {"beer", "wine", "liquor", "cocktail"};
+    private static final String PASSWORD = "LoadTest1";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String baseUri;
+    private final int number;
+    private final LatencyStats stats;
+    private final long endNanos;
+    private final long thinkMillis;
+
+    private final List<Long> alcoholIds = new ArrayList<>();
+    private String username;
+    private String token;
+
+    /**
+     * @param baseUri     the base uri of the server
+     * @param number      the unique number of the user, used for the username
+     * @param stats       the stats to record the requests in
+     * @param endNanos    the value of {@link System#nanoTime()} when the user stops
+     * @param thinkMillis the maximum milliseconds to wait between two requests
+     */
+    public VirtualUser(String baseUri, int number, LatencyStats stats, long endNanos, long thinkMillis) {
+        this.baseUri = baseUri;
+        this.number = number;
+        this.stats = stats;
+        this.endNanos = endNanos;
+        this.thinkMillis = thinkMillis;
+    }
+
+    @Override
+    public void run() {
+        try {
+            username = "load" + number + "_" + Long.toString(System.nanoTime() & 0xffffff, 36);
+            call("register", "POST", "/auth/register", "{\"username\":\"" + username
+                    + "\",\"email\":\"" + username + "@example.com\",\"password\":\"" + PASSWORD + "\"}");
+            login();
+            if (token == null) {
+                return;
+            }
+            while (System.nanoTime() < endNanos) {
+                int action = ThreadLocalRandom.current().nextInt(100);
+                if (action < 30) {
+                    call("getDrinks", "GET", "/manage/drinks?limit=50", null);
+                } else if (action < 55) {
+                    addDrink();
+                } else if (action < 75) {
+                    getAlcohols();
+                } else if (action < 90) {
+                    call("challenges", "GET", "/manage/challenges", null);
+                } else {
+                    login();
+                }
+                if (thinkMillis > 0) {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(thinkMillis + 1));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void login() {
+        byte[] body = call("login", "POST", "/auth/login",
+                "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}");
+        if (body != null) {
+            try {
+                token = mapper.readTree(body).get("token").asText();
+            } catch (IOException e) {
+                token = null;
+            }
+        }
+    }
+
+    private void getAlcohols() {
+        String type = ALCOHOL_TYPES[ThreadLocalRandom.current().nextInt(ALCOHOL_TYPES.length)];
+        byte[] body = call("getAlcohols", "GET", "/manage/alcohols/" + type, null);
+        if (body != null && alcoholIds.isEmpty()) {
+            try {
+                for (JsonNode alcohol : mapper.readTree(body)) {
+                    alcoholIds.add(alcohol.get("id").asLong());
+                }
+            } catch (IOException e) {
+                // another catalog is read the next time
+            }
+        }
+    }
+
+    private void addDrink() {
+        if (alcoholIds.isEmpty()) {
+            getAlcohols();
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long alcoholId = alcoholIds.get(random.nextInt(alcoholIds.size()));
+        long drankDate = System.currentTimeMillis() - random.nextLong(TimeUnit.HOURS.toMillis(6));
+        call("addDrink", "POST", "/manage/drinks",
+                "{\"alcoholId\":" + alcoholId + ",\"drankDate\":" + drankDate + "}");
+    }
+
+    /**
+     * Sends a request and records its latency, including the time to read the response.
+     *
+     * @return the body of the response or null if the request failed
+     */
+    private byte[] call(String endpoint, String method, String path, String json) {
+        long start = System.nanoTime();
+        byte[] body = null;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUri + path).openConnection();
+            connection.setRequestMethod(method);
+            if (token != null) {
+                connection.setRequestProperty("Authorization", "Bearer " + token);
+            }
+            if (json != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(json.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            // the response has to be read completely, so the connection is kept alive
+            byte[] response = readFully(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            if (status < 400) {
+                body = response;
+            }
+        } catch (IOException e) {
+            body = null;
+        }
+        stats.record(endpoint, System.nanoTime() - start, body == null);
+        return body;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return new byte[0];
+        }
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -1,22 +1,31 @@
+import helper.ApplicationBinder;
+import helper.EntityManagerHelper;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
 import repositories.AlcoholRepository;
-import repositories.ChallengeRepository;
+import repositories.SeedRepository;
+import repositories.UserAvailability;
 import utils.Constants;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Main {
 
+    private static final long SHUTDOWN_GRACE_SECONDS = 10;
+
     private static Logger LOG = Logger.getLogger(Main.class.getName());
 
     public static void main(String[] args) throws IOException {
-        final HttpServer server = startServer();
+        final ApplicationBinder binder = new ApplicationBinder();
+        final HttpServer server = startServer(binder);
 
         // activate error logging in the console
         Logger l = Logger.getLogger("org.glassfish.grizzly.http.server.HttpHandler");
@@ -30,20 +39,51 @@ public class Main {
             String arg = args[0];
             if (arg.equals("templates")) {
                 // load alcohol and the challenge templates into the database
-                new AlcoholRepository().loadAlcohol();
-                new ChallengeRepository().loadTemplates();
+                SeedRepository seedRepo = new SeedRepository();
+                seedRepo.loadAlcohol();
+                seedRepo.loadTemplates();
+                EntityManagerHelper.close();
+            } else if (arg.equals("rollup")) {
+                // rebuild the daily consumption of every user from the drinks
+                new AlcoholRepository().rebuildDailyConsumption();
+                EntityManagerHelper.close();
             }
         }
 
+        // the usernames and emails are checked against the filters from now on
+        UserAvailability.build();
+        EntityManagerHelper.close();
+
+        binder.start();
+
         LOG.info(String.format("Server starting at %s\nHit enter to stop ...", Constants.BASE_URI));
         System.in.read();
-        server.shutdownNow();
+        // finish the requests in progress before the background tasks and the connections are stopped
+        try {
+            server.shutdown(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS).get();
+        } catch (InterruptedException | ExecutionException e) {
+            server.shutdownNow();
+        }
+        binder.shutdown();
         LOG.info("Server closed.");
     }
 
-    private static HttpServer startServer() {
+    private static HttpServer startServer(ApplicationBinder binder) {
+        return startServer(binder, URI.create(Constants.BASE_URI));
+    }
+
+    /**
+     * Starts the server with every service and filter, also used by the load test.
+     *
+     * @param binder the binder of the application singletons
+     * @param uri    the base uri to listen on
+     * @return the started server
+     */
+    public static HttpServer startServer(ApplicationBinder binder, URI uri) {
         // search all classes in the package "services" to find REST services
-        final ResourceConfig rc = new ResourceConfig().packages("services", "filters");
-        return GrizzlyHttpServerFactory.createHttpServer(URI.create(Constants.BASE_URI), rc);
+        final ResourceConfig rc = new ResourceConfig().packages("services", "filters").register(binder)
+                // the WADL needs a JAXB implementation, without it every OPTIONS request (CORS preflight) fails
+                .property(ServerProperties.WADL_FEATURE_DISABLE, true);
+        return GrizzlyHttpServerFactory.createHttpServer(uri, rc);
     }
 }
@@ -0,0 +1,48 @@
+package challenges;
+
+import data.entities.Challenge;
+import data.entities.User;
+import data.enums.ChallengeType;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates the parameters of the challenges of a single {@link ChallengeType} and checks them.
+ * The implementations are found with the {@link java.util.ServiceLoader}, see {@link ChallengeEvaluators}.
+ */
+public interface ChallengeEvaluator {
+
+    /**
+     * @return the challenge type this evaluator is responsible for
+     */
+    ChallengeType getType();
+
+    /**
+     * Returns true if a challenge of this type can be given to the user.
+     *
+     * @param user the user
+     * @return true if the challenge can be evaluated for the user
+     */
+    default boolean isAvailable(User user) {
+        return true;
+    }
+
+    /**
+     * Creates the personalised parameters of a new challenge.
+     *
+     * @param snapshot the drinks of the user in the last week
+     * @param random   the source of randomness
+     * @return the parameters
+     */
+    List<Integer> createParameters(WeeklySnapshot snapshot, Random random);
+
+    /**
+     * Checks if the user fulfilled the challenge.
+     *
+     * @param challenge the challenge to check
+     * @param snapshot  the drinks of the user in the week of the challenge
+     * @return true if the challenge was a success
+     */
+    boolean isSuccess(Challenge challenge, WeeklySnapshot snapshot);
+}
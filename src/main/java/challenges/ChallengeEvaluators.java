@@ -0,0 +1,37 @@
+package challenges;
+
+import data.enums.ChallengeType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The {@link ChallengeEvaluator} of every {@link ChallengeType}, registered in
+ * {@code META-INF/services/challenges.ChallengeEvaluator}.
+ */
+public class ChallengeEvaluators {
+
+    private static final Map<ChallengeType, ChallengeEvaluator> evaluators = new EnumMap<>(ChallengeType.class);
+
+    static {
+        for (ChallengeEvaluator evaluator : ServiceLoader.load(ChallengeEvaluator.class)) {
+            evaluators.put(evaluator.getType(), evaluator);
+        }
+        for (ChallengeType type : ChallengeType.values()) {
+            if (!evaluators.containsKey(type)) {
+                throw new IllegalStateException("No evaluator for the challenge type " + type);
+            }
+        }
+    }
+
+    /**
+     * Returns the evaluator of the challenge type.
+     *
+     * @param type the challenge type
+     * @return the evaluator
+     */
+    public static ChallengeEvaluator get(ChallengeType type) {
+        return evaluators.get(type);
+    }
+}
@@ -0,0 +1,36 @@
+package challenges;
+
+import data.entities.Challenge;
+import data.enums.ChallengeType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks if the user drank no more than x drinks on every day.
+ */
+public class MaxDayEvaluator implements ChallengeEvaluator {
+
+    @Override
+    public ChallengeType getType() {
+        return ChallengeType.MAXDAY;
+    }
+
+    @Override
+    public List<Integer> createParameters(WeeklySnapshot snapshot, Random random) {
+        int drinkCount = snapshot.getTotal();
+        return Collections.singletonList(drinkCount / 7 - 2 <= 0 ? 1 : drinkCount / 7 - 2);
+    }
+
+    @Override
+    public boolean isSuccess(Challenge challenge, WeeklySnapshot snapshot) {
+        int maxAllowed = challenge.getParameter().get(0);
+        for (int count : snapshot.getDailyCounts()) {
+            if (count > maxAllowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
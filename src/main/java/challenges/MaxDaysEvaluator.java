@@ -0,0 +1,41 @@
+package challenges;
+
+import data.entities.Challenge;
+import data.enums.ChallengeType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks if the user drank on at least y days no more than x drinks.
+ * The parameters are the days and the maximum drinks, in the order of the template.
+ */
+public class MaxDaysEvaluator implements ChallengeEvaluator {
+
+    @Override
+    public ChallengeType getType() {
+        return ChallengeType.MAXDAYS;
+    }
+
+    @Override
+    public List<Integer> createParameters(WeeklySnapshot snapshot, Random random) {
+        int drinkCount = snapshot.getTotal();
+        return Arrays.asList(
+                random.nextInt(5) + 1, // random amount of days between 1 and 5 days
+                drinkCount / 7 - 2 <= 0 ? 1 : drinkCount / 7 - 2);
+    }
+
+    @Override
+    public boolean isSuccess(Challenge challenge, WeeklySnapshot snapshot) {
+        int days = challenge.getParameter().get(0);
+        int maxAllowed = challenge.getParameter().get(1);
+        int passedCount = 0;
+        for (int count : snapshot.getDailyCounts()) {
+            if (count <= maxAllowed) {
+                passedCount++;
+            }
+        }
+        return passedCount >= days;
+    }
+}
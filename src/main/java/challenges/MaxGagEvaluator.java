@@ -0,0 +1,30 @@
+package challenges;
+
+import data.entities.Challenge;
+import data.enums.ChallengeType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A challenge that is always fulfilled.
+ */
+public class MaxGagEvaluator implements ChallengeEvaluator {
+
+    @Override
+    public ChallengeType getType() {
+        return ChallengeType.MAXGAG;
+    }
+
+    @Override
+    public List<Integer> createParameters(WeeklySnapshot snapshot, Random random) {
+        // doesn't require any parameter
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isSuccess(Challenge challenge, WeeklySnapshot snapshot) {
+        return true;
+    }
+}
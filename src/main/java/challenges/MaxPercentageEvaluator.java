@@ -0,0 +1,40 @@
+package challenges;
+
+import data.entities.Challenge;
+import data.entities.User;
+import data.enums.ChallengeType;
+import repositories.BloodAlcoholEngine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks if the user had no more than x per mille.
+ * The alcohol level can only be estimated if the details of the user are set.
+ */
+public class MaxPercentageEvaluator implements ChallengeEvaluator {
+
+    @Override
+    public ChallengeType getType() {
+        return ChallengeType.MAXPERCENTAGE;
+    }
+
+    @Override
+    public boolean isAvailable(User user) {
+        return BloodAlcoholEngine.isSupported(user);
+    }
+
+    @Override
+    public List<Integer> createParameters(WeeklySnapshot snapshot, Random random) {
+        double peak = BloodAlcoholEngine.getPeakSince(snapshot.getUser(), snapshot.getStart());
+        return Collections.singletonList(Math.max(1, (int) Math.ceil(peak) - 1));
+    }
+
+    @Override
+    public boolean isSuccess(Challenge challenge, WeeklySnapshot snapshot) {
+        User user = snapshot.getUser();
+        return isAvailable(user)
+                && BloodAlcoholEngine.getPeakSince(user, snapshot.getStart()) < challenge.getParameter().get(0);
+    }
+}
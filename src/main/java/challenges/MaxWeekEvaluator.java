@@ -0,0 +1,31 @@
+package challenges;
+
+import data.entities.Challenge;
+import data.enums.ChallengeType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks if the user drank fewer than x drinks in a week.
+ */
+public class MaxWeekEvaluator implements ChallengeEvaluator {
+
+    @Override
+    public ChallengeType getType() {
+        return ChallengeType.MAXWEEK;
+    }
+
+    @Override
+    public List<Integer> createParameters(WeeklySnapshot snapshot, Random random) {
+        int drinkCount = snapshot.getTotal();
+        return Collections.singletonList(drinkCount - 2 <= 0 ? 1 : drinkCount - 2);
+    }
+
+    @Override
+    public boolean isSuccess(Challenge challenge, WeeklySnapshot snapshot) {
+        int limit = challenge.getParameter().get(0);
+        return snapshot.getTotal() < limit;
+    }
+}
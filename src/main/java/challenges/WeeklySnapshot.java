@@ -0,0 +1,69 @@
+package challenges;
+
+import data.entities.DailyConsumption;
+import data.entities.User;
+import helper.DayBuckets;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The drinks of an user per day since the start of a week, read once and shared by every evaluator.
+ */
+public class WeeklySnapshot {
+
+    private final User user;
+    private final Date start;
+    private final int[] dailyCounts;
+    private final double[] dailyGrams;
+    private final int total;
+
+    /**
+     * @param user         the user
+     * @param start        the start of the week
+     * @param end          the end of the week
+     * @param consumptions the daily consumptions of the user in this week
+     */
+    public WeeklySnapshot(User user, Date start, Date end, List<DailyConsumption> consumptions) {
+        this.user = user;
+        this.start = start;
+        DayBuckets buckets = new DayBuckets(DailyConsumption.ZONE, start.getTime(), end.getTime());
+        for (DailyConsumption consumption : consumptions) {
+            buckets.add(consumption.getDay().getTime(), consumption.getDrinkCount(), consumption.getGrams());
+        }
+        this.dailyCounts = buckets.getCounts();
+        this.dailyGrams = buckets.getGrams();
+        this.total = buckets.getTotalCount();
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public Date getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the number of drinks of every day of the week, the first day is the day of the start.
+     * The array must not be modified.
+     *
+     * @return the drink counts
+     */
+    public int[] getDailyCounts() {
+        return dailyCounts;
+    }
+
+    /**
+     * Returns the grams of alcohol of every day of the week, the array must not be modified.
+     *
+     * @return the grams
+     */
+    public double[] getDailyGrams() {
+        return dailyGrams;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
@@ -1,14 +1,20 @@
 package data.entities;
 
 import data.enums.AlcoholType;
-import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import javax.persistence.*;
+import java.io.IOException;
 
 @Entity
 @Table(name = "Booze_Alcohol")
 public class Alcohol {
 
+    /**
+     * The grams of alcohol per millilitre.
+     */
+    private static final double ALCOHOL_DENSITY = 0.789;
+
     @Id
     @GeneratedValue
     private long id;
@@ -39,14 +45,26 @@ public class Alcohol {
         this.amount = amount;
     }
 
-    public JSONObject toJson() {
-        return new JSONObject()
-                .put("id", id)
-                .put("type", type.toString())
-                .put("name", name)
-                .put("percentage", percentage)
-                .put("amount", amount)
-                .put("category", category);
+    public void toJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", id);
+        gen.writeStringField("type", type.toString());
+        gen.writeStringField("name", name);
+        gen.writeNumberField("percentage", percentage);
+        gen.writeNumberField("amount", amount);
+        if (category != null) {
+            gen.writeStringField("category", category);
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Returns the grams of pure alcohol, the amount is in millilitres.
+     *
+     * @return the grams of alcohol
+     */
+    public double calculateGrams() {
+        return amount * percentage / 100.0 * ALCOHOL_DENSITY;
     }
 
     public long getId() {
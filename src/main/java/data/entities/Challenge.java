@@ -1,9 +1,9 @@
 package data.entities;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import javax.persistence.*;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -53,16 +53,18 @@ public class Challenge {
         this.date = new Date();
     }
 
-    public JSONObject toJson() {
-        JSONObject json = new JSONObject();
-        json.put("desc", this.template.getContent());
-        json.put("amount", this.template.getAmount());
-        JSONArray arr = new JSONArray();
+    public void toJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("desc", this.template.getContent());
+        gen.writeNumberField("amount", this.template.getAmount());
+        gen.writeArrayFieldStart("params");
         for (Integer p : this.parameter) {
-            arr.put(new JSONObject().put("param", p));
+            gen.writeStartObject();
+            gen.writeNumberField("param", p);
+            gen.writeEndObject();
         }
-        json.put("params", arr);
-        return json;
+        gen.writeEndArray();
+        gen.writeEndObject();
     }
 
     @Override
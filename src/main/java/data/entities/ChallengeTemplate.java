@@ -7,8 +7,7 @@ import javax.persistence.*;
 @Entity
 @Table(name = "Booze_ChallengeTemplate")
 @NamedQueries({
-        @NamedQuery(name = "Template.count", query = "select count(t) from ChallengeTemplate t"),
-        @NamedQuery(name = "Template.getRandomTemplate", query = "SELECT t from ChallengeTemplate t where t.id = :id")
+        @NamedQuery(name = "Template.count", query = "select count(t) from ChallengeTemplate t")
 })
 public class ChallengeTemplate {
     /**
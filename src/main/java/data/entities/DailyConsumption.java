@@ -0,0 +1,179 @@
+package data.entities;
+
+import data.enums.AlcoholType;
+import helper.EpochDays;
+
+import javax.persistence.*;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * The drinks of an user on a single day, maintained whenever a drink is added or removed.
+ */
+@Entity
+@Table(name = "Booze_DailyConsumption",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"USER_ID", "DAY"}))
+@NamedQueries({
+        @NamedQuery(name = "DailyConsumption.get-of-day",
+                query = "SELECT c FROM DailyConsumption c WHERE c.user = :user AND c.day = :day"),
+        @NamedQuery(name = "DailyConsumption.get-since",
+                query = "SELECT c FROM DailyConsumption c WHERE c.user = :user AND c.day >= :start ORDER BY c.day")
+})
+public class DailyConsumption {
+
+    /**
+     * the time zone the days are calculated in
+     */
+    public static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @ManyToOne
+    private User user;
+
+    @Temporal(TemporalType.DATE)
+    private Date day;
+
+    private int drinkCount;
+
+    /**
+     * the grams of pure alcohol
+     */
+    private double grams;
+
+    private int beerCount;
+    private int wineCount;
+    private int cocktailCount;
+    private int liquorCount;
+
+    public DailyConsumption() {
+    }
+
+    public DailyConsumption(User user, Date day) {
+        this.user = user;
+        this.day = day;
+    }
+
+    /**
+     * Returns the start of the day of the date.
+     *
+     * @param date the date
+     * @return the start of the day
+     */
+    public static Date dayOf(Date date) {
+        // java.sql.Date does not support toInstant()
+        return new Date(EpochDays.startOf(EpochDays.toEpochDay(date.getTime(), ZONE), ZONE));
+    }
+
+    /**
+     * Adds or subtracts a drink.
+     *
+     * @param alcohol the alcohol of the drink
+     * @param sign    1 to add the drink, -1 to subtract it
+     */
+    public void add(Alcohol alcohol, int sign) {
+        drinkCount += sign;
+        grams += sign * alcohol.calculateGrams();
+        switch (alcohol.getType()) {
+            case BEER:
+                beerCount += sign;
+                break;
+            case WINE:
+                wineCount += sign;
+                break;
+            case COCKTAIL:
+                cocktailCount += sign;
+                break;
+            case LIQUOR:
+                liquorCount += sign;
+                break;
+        }
+    }
+
+    public int getCount(AlcoholType type) {
+        switch (type) {
+            case BEER:
+                return beerCount;
+            case WINE:
+                return wineCount;
+            case COCKTAIL:
+                return cocktailCount;
+            default:
+                return liquorCount;
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Date getDay() {
+        return day;
+    }
+
+    public void setDay(Date day) {
+        this.day = day;
+    }
+
+    public int getDrinkCount() {
+        return drinkCount;
+    }
+
+    public void setDrinkCount(int drinkCount) {
+        this.drinkCount = drinkCount;
+    }
+
+    public double getGrams() {
+        return grams;
+    }
+
+    public void setGrams(double grams) {
+        this.grams = grams;
+    }
+
+    public int getBeerCount() {
+        return beerCount;
+    }
+
+    public void setBeerCount(int beerCount) {
+        this.beerCount = beerCount;
+    }
+
+    public int getWineCount() {
+        return wineCount;
+    }
+
+    public void setWineCount(int wineCount) {
+        this.wineCount = wineCount;
+    }
+
+    public int getCocktailCount() {
+        return cocktailCount;
+    }
+
+    public void setCocktailCount(int cocktailCount) {
+        this.cocktailCount = cocktailCount;
+    }
+
+    public int getLiquorCount() {
+        return liquorCount;
+    }
+
+    public void setLiquorCount(int liquorCount) {
+        this.liquorCount = liquorCount;
+    }
+}
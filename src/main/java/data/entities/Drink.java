@@ -1,13 +1,14 @@
 package data.entities;
 
-import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import javax.persistence.*;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Date;
 
 @Entity
-@Table(name = "Booze_Drink")
+@Table(name = "Booze_Drink", indexes = @Index(columnList = "USER_ID, DRANKDATE, ID"))
 @NamedQueries({
         @NamedQuery(name = "Drink.get-drinks-in-between-time",
                 query = "SELECT d from Drink d where d.user.id = :id and (d.drankDate between :start and current_date)"),
@@ -40,13 +41,19 @@ public class Drink {
         this.latitude = latitude;
     }
 
-    public JSONObject toJson() {
-        return new JSONObject()
-                .put("id", id)
-                .put("alcohol", alcohol.toJson())
-                .put("drankDate", drankDate.getTime())
-                .put("longitude", longitude)
-                .put("latitude", latitude);
+    public void toJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", id);
+        gen.writeFieldName("alcohol");
+        alcohol.toJson(gen);
+        gen.writeNumberField("drankDate", drankDate.getTime());
+        if (longitude != null) {
+            gen.writeNumberField("longitude", longitude);
+        }
+        if (latitude != null) {
+            gen.writeNumberField("latitude", latitude);
+        }
+        gen.writeEndObject();
     }
 
     public long getId() {
@@ -0,0 +1,90 @@
+package data.entities;
+
+import javax.persistence.*;
+
+/**
+ * A change of the drinks of an user, used to synchronize the drinks incrementally.
+ * Every change gets the next sequence number of the user, a removed drink stays as a tombstone
+ * until the change is pruned.
+ */
+@Entity
+@Table(name = "Booze_DrinkChange", indexes = @Index(columnList = "USER_ID, SEQUENCE"))
+@NamedQueries({
+        @NamedQuery(name = "DrinkChange.get-since",
+                query = "SELECT c FROM DrinkChange c WHERE c.user = :user AND c.sequence > :sequence ORDER BY c.sequence"),
+        @NamedQuery(name = "DrinkChange.delete-until",
+                query = "DELETE FROM DrinkChange c WHERE c.user = :user AND c.sequence <= :sequence")
+})
+public class DrinkChange {
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @ManyToOne
+    private User user;
+
+    /**
+     * the sequence number of the change, unique per user
+     */
+    private long sequence;
+
+    /**
+     * the id of the changed drink
+     */
+    private long drinkId;
+
+    /**
+     * true if the drink was removed, false if it was added
+     */
+    private boolean removed;
+
+    public DrinkChange() {
+    }
+
+    public DrinkChange(User user, long sequence, long drinkId, boolean removed) {
+        this.user = user;
+        this.sequence = sequence;
+        this.drinkId = drinkId;
+        this.removed = removed;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getDrinkId() {
+        return drinkId;
+    }
+
+    public void setDrinkId(long drinkId) {
+        this.drinkId = drinkId;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(boolean removed) {
+        this.removed = removed;
+    }
+}
@@ -0,0 +1,129 @@
+package data.entities;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * An email that still has to be sent, written in the same transaction as the data it belongs to.
+ * The rows are sent and deleted by the {@link mail.MailDispatcher}.
+ */
+@Entity
+@Table(name = "Booze_MailOutbox", indexes = @Index(columnList = "NEXTATTEMPT"))
+@NamedQueries({
+        @NamedQuery(name = "MailOutbox.get-due",
+                query = "SELECT m FROM MailOutbox m WHERE m.nextAttempt <= :now ORDER BY m.nextAttempt, m.id"),
+        @NamedQuery(name = "MailOutbox.count", query = "SELECT COUNT(m) FROM MailOutbox m")
+})
+public class MailOutbox {
+    @Id
+    @GeneratedValue
+    private long id;
+
+    /**
+     * the email address of the recipient
+     */
+    private String recipient;
+
+    private String subject;
+
+    /**
+     * the html body of the email
+     */
+    @Column(length = 4000)
+    private String body;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+
+    /**
+     * the number of failed attempts to send the email
+     */
+    private int attempts;
+
+    /**
+     * the time from which on the email is sent (again)
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextAttempt;
+
+    /**
+     * the error of the last failed attempt
+     */
+    @Column(length = 1000)
+    private String lastError;
+
+    public MailOutbox() {
+    }
+
+    public MailOutbox(String recipient, String subject, String body) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+        this.created = new Date();
+        this.nextAttempt = this.created;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public void setCreated(Date created) {
+        this.created = created;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt(Date nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
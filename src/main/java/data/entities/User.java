@@ -1,13 +1,9 @@
 package data.entities;
 
-import org.bouncycastle.util.encoders.Hex;
-import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import javax.persistence.*;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import java.io.IOException;
 import java.util.*;
 
 @Entity
@@ -28,7 +24,14 @@ public class User {
     @Column(unique = true)
     private String email;
 
+    /**
+     * the hash of the password in the format of {@link helper.PasswordHasher}
+     */
     private String password;
+
+    /**
+     * the salt of the legacy password format, null for the current format
+     */
     private String salt;
     private boolean enabled = false;
     private boolean detailsSet = false;
@@ -45,6 +48,11 @@ public class User {
 
     private int points;
 
+    /**
+     * the sequence number of the latest {@link DrinkChange} of the user
+     */
+    private long drinkChangeSequence;
+
     @OneToOne(cascade = CascadeType.MERGE)
     private VerificationToken verificationToken;
 
@@ -64,46 +72,38 @@ public class User {
         this.challenges = new ArrayList<>();
     }
 
+    /**
+     * @param username the username
+     * @param email    the email
+     * @param password the hash of the password, see {@link helper.PasswordHasher}
+     */
     public User(String username, String email, String password) {
         this();
         this.username = username;
         this.email = email;
-        hashPassword(password);
-    }
-
-    public JSONObject toJson() {
-        return new JSONObject()
-                .put("username", username)
-                .put("email", email)
-                .put("firstName", firstName)
-                .put("lastName", lastName)
-                .put("gender", gender)
-                .put("birthday", birthday.getTime())
-                .put("height", height)
-                .put("weight", weight)
-                .put("points", points);
-    }
-
-    private void hashPassword(String password) {
-        // generate the salt
-        SecureRandom random = new SecureRandom();
-        byte[] salt = new byte[16];
-        random.nextBytes(salt);
-
-        try {
-            // setup the encryption
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-
-            // encrypt
-            byte[] hash = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            // encrypted password
-            this.password = new String(Hex.encode(hash));
-            // salt
-            this.salt = new String(Hex.encode(salt));
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+        this.password = password;
+    }
+
+    public void toJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("username", username);
+        gen.writeStringField("email", email);
+        if (firstName != null) {
+            gen.writeStringField("firstName", firstName);
+        }
+        if (lastName != null) {
+            gen.writeStringField("lastName", lastName);
+        }
+        if (gender != null) {
+            gen.writeStringField("gender", gender);
         }
+        if (birthday != null) {
+            gen.writeNumberField("birthday", birthday.getTime());
+        }
+        gen.writeNumberField("height", height);
+        gen.writeNumberField("weight", weight);
+        gen.writeNumberField("points", points);
+        gen.writeEndObject();
     }
 
     public long getId() {
@@ -143,7 +143,7 @@ public class User {
     }
 
     public void setPassword(String password) {
-        hashPassword(password);
+        this.password = password;
     }
 
     public String getSalt() {
@@ -242,6 +242,14 @@ public class User {
         this.challenges = challenges;
     }
 
+    public long getDrinkChangeSequence() {
+        return drinkChangeSequence;
+    }
+
+    public void setDrinkChangeSequence(long drinkChangeSequence) {
+        this.drinkChangeSequence = drinkChangeSequence;
+    }
+
     public int getPoints() {
         return points;
     }
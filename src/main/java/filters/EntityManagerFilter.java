@@ -0,0 +1,46 @@
+package filters;
+
+import helper.EntityManagerHelper;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+
+/**
+ * Scopes the entity manager of {@link EntityManagerHelper} to a single request.
+ * The entity manager itself is opened lazily by the repositories.
+ * Responses with an entity are streamed after the response filters ran, so in this case
+ * the entity manager is closed once the entity is written.
+ */
+@Provider
+@PreMatching
+public class EntityManagerFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        // discard an entity manager that might be left over from an aborted request on this thread
+        EntityManagerHelper.close();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (!responseContext.hasEntity()) {
+            EntityManagerHelper.close();
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        try {
+            context.proceed();
+        } finally {
+            EntityManagerHelper.close();
+        }
+    }
+}
@@ -1,29 +1,62 @@
 package filters;
 
 import helper.JwtHelper;
+import helper.UserPrincipal;
 
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.Priorities;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.ext.Provider;
+import java.security.Principal;
 
 @Provider
+@Priority(Priorities.AUTHENTICATION)
 public class JwtFilter implements ContainerRequestFilter {
 
+    @Inject
+    private JwtHelper jwtHelper;
+
     @Override
     public void filter(ContainerRequestContext rc) {
         // Checks if the JWT token is valid when the url path includes the ManageService
         if (!rc.getUriInfo().getPath().contains("manage") || rc.getMethod().equals("OPTIONS"))
             return;
-        JwtHelper jwtHelper = new JwtHelper();
+        UserPrincipal principal;
         try {
-            String[] auth = rc.getHeaderString(HttpHeaders.AUTHORIZATION)
-                    .split("\\s");
-            jwtHelper.getUserId(auth[1]);
+            String auth = rc.getHeaderString(HttpHeaders.AUTHORIZATION);
+            String jwt = auth.substring(auth.indexOf(' ') + 1).trim();
+            principal = new UserPrincipal(jwtHelper.getUserId(jwt));
         } catch (Exception ex) {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
+        // provide the resolved user to the services
+        boolean secure = rc.getSecurityContext().isSecure();
+        rc.setSecurityContext(new SecurityContext() {
+            @Override
+            public Principal getUserPrincipal() {
+                return principal;
+            }
+
+            @Override
+            public boolean isUserInRole(String role) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return secure;
+            }
+
+            @Override
+            public String getAuthenticationScheme() {
+                return "Bearer";
+            }
+        });
     }
 }
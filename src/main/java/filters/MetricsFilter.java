@@ -0,0 +1,226 @@
+package filters;
+
+import helper.Config;
+import helper.LatencyHistogram;
+import helper.QueryProfiler;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import javax.annotation.Priority;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Records the latency and the status codes of every request per route, i.e. per HTTP method and path template,
+ * so a path with an id does not create a new route per id. The metrics are exported by {@link services.MetricsService}.
+ * <p>
+ * The filter runs before every other filter and the latency includes writing the response entity,
+ * like {@link EntityManagerFilter} the request is completed once the entity is written.
+ * <p>
+ * The SQL statements of the request are recorded by the {@link QueryProfiler}, a request over the query budget
+ * is logged with its most repeated statement. If "diagnostics" is enabled in the config file, every response
+ * gets a Server-Timing header with the statements and the database time until the response filters ran.
+ */
+@Provider
+@PreMatching
+@Priority(1)
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final String START = MetricsFilter.class.getName() + ".start";
+    private static final String ROUTE = MetricsFilter.class.getName() + ".route";
+    private static final String STATUS = MetricsFilter.class.getName() + ".status";
+
+    private static final boolean DIAGNOSTICS = Boolean.parseBoolean(Config.get("diagnostics", "false"));
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * The key of the route of every request that did not match a resource, regardless of its HTTP method,
+     * so a client can't create a route per made-up method.
+     */
+    private static final String UNMATCHED = "unmatched";
+
+    /**
+     * The routes by their resource method, or {@link #UNMATCHED}.
+     */
+    private static final Map<Object, Route> routes = new ConcurrentHashMap<>();
+
+    private static Logger LOG = Logger.getLogger(MetricsFilter.class.getName());
+
+    @Override
+    public void filter(ContainerRequestContext rc) {
+        rc.setProperty(START, System.nanoTime());
+        inFlight.incrementAndGet();
+        QueryProfiler.begin();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext rc, ContainerResponseContext responseContext) {
+        if (rc.getProperty(START) == null) {
+            return;
+        }
+        Route route = getRoute(rc);
+        if (DIAGNOSTICS) {
+            addServerTiming(responseContext);
+        }
+        if (responseContext.hasEntity()) {
+            rc.setProperty(ROUTE, route);
+            rc.setProperty(STATUS, responseContext.getStatus());
+        } else {
+            complete(rc.getProperty(START), route, responseContext.getStatus());
+            rc.removeProperty(START);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        try {
+            context.proceed();
+        } finally {
+            Object route = context.getProperty(ROUTE);
+            if (route != null) {
+                complete(context.getProperty(START), (Route) route, (Integer) context.getProperty(STATUS));
+                context.removeProperty(ROUTE);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests in progress, including the requests that are rejected by the filters.
+     */
+    public static int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns every route that received a request since the start.
+     */
+    public static Collection<Route> getRoutes() {
+        return Collections.unmodifiableCollection(routes.values());
+    }
+
+    private static void complete(Object start, Route route, int status) {
+        route.histogram.record(System.nanoTime() - (Long) start);
+        route.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        inFlight.decrementAndGet();
+
+        QueryProfiler.Profile profile = QueryProfiler.end();
+        if (profile != null) {
+            route.dbStatements.add(profile.getStatements());
+            route.dbNanos.add(profile.getDbNanos());
+            if (profile.isOverBudget()) {
+                route.overBudget.increment();
+                LOG.warning(String.format("%s %s executed %d statements in %.1f ms, the most repeated %d times: %s",
+                        route.method, route.path, profile.getStatements(), profile.getDbNanos() / 1e6,
+                        profile.getMostRepeatedCount(), profile.getMostRepeated()));
+            }
+        }
+    }
+
+    private static void addServerTiming(ContainerResponseContext responseContext) {
+        QueryProfiler.Profile profile = QueryProfiler.get();
+        if (profile != null) {
+            responseContext.getHeaders().add("Server-Timing", String.format(Locale.ROOT,
+                    "db;dur=%.2f;desc=\"%d statements\", app;dur=%.2f",
+                    profile.getDbNanos() / 1e6, profile.getStatements(), profile.getElapsedNanos() / 1e6));
+        }
+    }
+
+    private static Route getRoute(ContainerRequestContext rc) {
+        ResourceMethod resourceMethod = ((ExtendedUriInfo) rc.getUriInfo()).getMatchedResourceMethod();
+        if (resourceMethod == null) {
+            return routes.computeIfAbsent(UNMATCHED, key -> new Route("ANY", UNMATCHED));
+        }
+        Route route = routes.get(resourceMethod);
+        if (route == null) {
+            // the templates are ordered from the resource method to the resource class
+            List<UriTemplate> templates = ((ExtendedUriInfo) rc.getUriInfo()).getMatchedTemplates();
+            StringBuilder path = new StringBuilder();
+            for (int i = templates.size() - 1; i >= 0; i--) {
+                String template = templates.get(i).getTemplate();
+                if (!template.startsWith("/")) {
+                    path.append('/');
+                }
+                path.append(template);
+            }
+            String normalized = path.toString().replaceAll("/+", "/");
+            route = routes.computeIfAbsent(resourceMethod, m -> new Route(resourceMethod.getHttpMethod(), normalized));
+        }
+        return route;
+    }
+
+    /**
+     * The metrics of a single route.
+     */
+    public static class Route {
+        private final String method;
+        private final String path;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder dbStatements = new LongAdder();
+        private final LongAdder dbNanos = new LongAdder();
+        private final LongAdder overBudget = new LongAdder();
+
+        private Route(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        /**
+         * Returns the HTTP method, or "ANY" for the requests that did not match a resource.
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * Returns the path template, e.g. /manage/drinks/{id}, or "unmatched".
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * Returns the number of responses per status code.
+         */
+        public Map<Integer, LongAdder> getStatuses() {
+            return Collections.unmodifiableMap(statuses);
+        }
+
+        public long getDbStatements() {
+            return dbStatements.sum();
+        }
+
+        public long getDbNanos() {
+            return dbNanos.sum();
+        }
+
+        /**
+         * Returns the number of requests that exceeded the query budget of the {@link QueryProfiler}.
+         */
+        public long getOverBudget() {
+            return overBudget.sum();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package filters;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import helper.Config;
+import helper.ConnectionPool;
+import helper.TokenBuckets;
+import helper.UserPrincipal;
+import org.glassfish.grizzly.http.server.Request;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects requests early, before they reach the database.
+ * <ul>
+ * <li>503 SERVICE UNAVAILABLE if too many requests are processed at the moment or too many requests
+ * are waiting for a connection of the {@link ConnectionPool}.</li>
+ * <li>429 TOO MANY REQUESTS if the client exceeded the limit of the route. The clients of /manage
+ * are identified by their user id and the clients of /auth and /metrics by their ip address.</li>
+ * </ul>
+ * The limits can be changed in the config file, every key is optional:
+ * <ul>
+ * <li>admission_max_in_flight: the maximum number of requests in progress (default 256)</li>
+ * <li>admission_max_pool_waiters: the maximum number of requests waiting for a connection (default 20)</li>
+ * <li>rate_limit.&lt;path&gt;: the burst and the requests per second of a route as {@code burst,rate},
+ * the rate has to be positive and the route with the longest matching path prefix is used
+ * (defaults: auth/login 10,0.5, auth/register 5,0.1, auth/available 30,5, auth 20,2, manage 120,20
+ * and metrics 10,1)</li>
+ * <li>rate_limit_max_clients: the maximum number of clients with an own limit per route, the clients beyond
+ * share a limit until the idle clients were removed (default 100000)</li>
+ * <li>trust_forwarded_for: use the first address of the X-Forwarded-For header as client address
+ * if the server runs behind a proxy (default false)</li>
+ * </ul>
+ * Like {@link MetricsFilter} a request is in progress until its response entity is written.
+ */
+@Provider
+@Priority(Priorities.AUTHORIZATION)
+public class RateLimitFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    /**
+     * The maximum Retry-After of a rate limited request in seconds.
+     */
+    private static final long MAX_RETRY_AFTER_SECONDS = 3600;
+
+    /**
+     * 429 TOO MANY REQUESTS, which is missing in {@link Response.Status} of JAX-RS 2.0.
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String ADMITTED = RateLimitFilter.class.getName() + ".admitted";
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final LongAdder rateLimited = new LongAdder();
+    private static final LongAdder shed = new LongAdder();
+
+    private final List<Route> routes = new ArrayList<>();
+    private final int maxInFlight;
+    private final int maxPoolWaiters;
+    private final int maxClients;
+    private final boolean trustForwardedFor;
+
+    @Inject
+    private javax.inject.Provider<Request> request;
+
+    public RateLimitFilter() {
+        Properties properties = Config.get();
+        maxInFlight = Integer.parseInt(properties.getProperty("admission_max_in_flight", "256"));
+        maxPoolWaiters = Integer.parseInt(properties.getProperty("admission_max_pool_waiters", "20"));
+        maxClients = Integer.parseInt(properties.getProperty("rate_limit_max_clients", "100000"));
+        trustForwardedFor = Boolean.parseBoolean(properties.getProperty("trust_forwarded_for", "false"));
+
+        Properties limits = new Properties();
+        limits.setProperty("rate_limit.auth/login", "10,0.5");
+        limits.setProperty("rate_limit.auth/register", "5,0.1");
+        limits.setProperty("rate_limit.auth/available", "30,5");
+        limits.setProperty("rate_limit.auth", "20,2");
+        limits.setProperty("rate_limit.manage", "120,20");
+        limits.setProperty("rate_limit.metrics", "10,1");
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("rate_limit.")) {
+                limits.setProperty(key, properties.getProperty(key));
+            }
+        }
+        for (String key : limits.stringPropertyNames()) {
+            String[] limit = limits.getProperty(key).split(",");
+            routes.add(new Route(key.substring("rate_limit.".length()),
+                    new TokenBuckets(maxClients, Integer.parseInt(limit[0].trim()), Double.parseDouble(limit[1].trim()))));
+        }
+        // the longest prefix has to match first
+        routes.sort((a, b) -> b.prefix.length() - a.prefix.length());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext rc) {
+        if (rc.getMethod().equals("OPTIONS")) {
+            return;
+        }
+        HikariPoolMXBean pool = ConnectionPool.getPoolStatistics();
+        if (pool != null && pool.getThreadsAwaitingConnection() > maxPoolWaiters) {
+            reject(rc, Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), 1);
+            return;
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            reject(rc, Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), 1);
+            return;
+        }
+        rc.setProperty(ADMITTED, Boolean.TRUE);
+
+        String path = rc.getUriInfo().getPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        for (Route route : routes) {
+            if (path.startsWith(route.prefix)) {
+                Object key = getClientKey(rc);
+                long waitMillis = key != null ? route.buckets.tryAcquire(key) : 0;
+                if (waitMillis > 0) {
+                    reject(rc, TOO_MANY_REQUESTS, Math.min((waitMillis - 1) / 1000 + 1, MAX_RETRY_AFTER_SECONDS));
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext rc, ContainerResponseContext responseContext) {
+        // a response with an entity is completed once the entity is written
+        if (rc.getProperty(ADMITTED) != null && !responseContext.hasEntity()) {
+            rc.removeProperty(ADMITTED);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        try {
+            context.proceed();
+        } finally {
+            if (context.getProperty(ADMITTED) != null) {
+                context.removeProperty(ADMITTED);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests in progress.
+     */
+    public static int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of requests that were rejected with 429 TOO MANY REQUESTS.
+     */
+    public static long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Returns the number of requests that were rejected with 503 SERVICE UNAVAILABLE.
+     */
+    public static long getShed() {
+        return shed.sum();
+    }
+
+    private Object getClientKey(ContainerRequestContext rc) {
+        if (rc.getSecurityContext().getUserPrincipal() instanceof UserPrincipal) {
+            return ((UserPrincipal) rc.getSecurityContext().getUserPrincipal()).getId();
+        }
+        if (trustForwardedFor) {
+            String forwardedFor = rc.getHeaderString("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isEmpty()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        Request current = request.get();
+        return current != null ? current.getRemoteAddr() : null;
+    }
+
+    private void reject(ContainerRequestContext rc, int status, long retryAfterSeconds) {
+        if (status == TOO_MANY_REQUESTS) {
+            rateLimited.increment();
+        } else {
+            shed.increment();
+        }
+        rc.abortWith(Response.status(status)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .build());
+    }
+
+    private static class Route {
+        private final String prefix;
+        private final TokenBuckets buckets;
+
+        private Route(String prefix, TokenBuckets buckets) {
+            this.prefix = prefix;
+            this.buckets = buckets;
+        }
+    }
+}
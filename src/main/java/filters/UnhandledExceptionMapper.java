@@ -0,0 +1,28 @@
+package filters;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Turns every exception that is not mapped otherwise into a 500 INTERNAL SERVER ERROR and logs it.
+ * Without a mapper Jersey hands the exception to the container, which skips the response filters,
+ * so the request would neither be counted by the {@link MetricsFilter} nor get the CORS headers.
+ */
+@Provider
+public class UnhandledExceptionMapper implements ExceptionMapper<Throwable> {
+
+    private static Logger LOG = Logger.getLogger(UnhandledExceptionMapper.class.getName());
+
+    @Override
+    public Response toResponse(Throwable exception) {
+        if (exception instanceof WebApplicationException) {
+            return ((WebApplicationException) exception).getResponse();
+        }
+        LOG.log(Level.SEVERE, "Unhandled exception", exception);
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+    }
+}
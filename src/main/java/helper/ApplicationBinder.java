@@ -0,0 +1,97 @@
+package helper;
+
+import mail.Mail;
+import mail.MailDispatcher;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import repositories.AlcoholRepository;
+import repositories.ChallengeRepository;
+import repositories.UserRepository;
+import scheduler.ChallengeScheduler;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Creates the application wide singletons once and binds them for the injection into the services and filters.
+ * The background tasks share a single executor with {@value #BACKGROUND_THREADS} threads, which is shut down
+ * together with everything else by {@link #shutdown()}.
+ */
+public class ApplicationBinder extends AbstractBinder {
+
+    private static final int BACKGROUND_THREADS = 4;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static Logger LOG = Logger.getLogger(ApplicationBinder.class.getName());
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(BACKGROUND_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "background-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final JwtHelper jwtHelper = new JwtHelper();
+    private final Mail mail = new Mail();
+    private final UserRepository userRepo = new UserRepository(jwtHelper);
+    private final AlcoholRepository alcoholRepo = new AlcoholRepository();
+    private final ChallengeRepository challengeRepo = new ChallengeRepository();
+    private final MailDispatcher mailDispatcher = new MailDispatcher(mail, executor);
+    private final ChallengeScheduler challengeScheduler = new ChallengeScheduler(challengeRepo, executor);
+    private final PrometheusExporter prometheusExporter = new PrometheusExporter(mailDispatcher, challengeScheduler);
+
+    @Override
+    protected void configure() {
+        bind(executor).to(ScheduledExecutorService.class);
+        bind(jwtHelper).to(JwtHelper.class);
+        bind(mail).to(Mail.class);
+        bind(userRepo).to(UserRepository.class);
+        bind(alcoholRepo).to(AlcoholRepository.class);
+        bind(challengeRepo).to(ChallengeRepository.class);
+        bind(mailDispatcher).to(MailDispatcher.class);
+        bind(challengeScheduler).to(ChallengeScheduler.class);
+        bind(prometheusExporter).to(PrometheusExporter.class);
+    }
+
+    /**
+     * Starts the background tasks.
+     */
+    public void start() {
+        // send the emails of the outbox in the background
+        mailDispatcher.start();
+        // check the due challenges in the background
+        challengeScheduler.start();
+    }
+
+    /**
+     * Stops the background tasks, waits for the running ones and releases the connections.
+     * Has to be called after the http server stopped accepting requests.
+     */
+    public void shutdown() {
+        challengeScheduler.stop();
+        mailDispatcher.stop();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warning("The background tasks did not finish in time");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        PasswordHasher.shutdown();
+        EntityManagerHelper.getFactory().close();
+        ConnectionPool.close();
+    }
+
+    public ChallengeScheduler getChallengeScheduler() {
+        return challengeScheduler;
+    }
+
+    public MailDispatcher getMailDispatcher() {
+        return mailDispatcher;
+    }
+}
@@ -0,0 +1,51 @@
+package helper;
+
+import utils.Constants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * The keys of the config file {@value Constants#CONFIG_FILE}, read once.
+ * Every key can be overridden with a system property of the same name prefixed with {@value #OVERRIDE_PREFIX},
+ * e.g. -Dbooze.jdbc_url=jdbc:h2:mem:boozedb, which is how the load test runs the server without MySQL and SMTP.
+ */
+public class Config {
+
+    public static final String OVERRIDE_PREFIX = "booze.";
+
+    private static Properties properties;
+
+    /**
+     * Returns the config, the returned properties must not be modified.
+     *
+     * @return the keys of the config file merged with the overrides
+     */
+    public static synchronized Properties get() {
+        if (properties == null) {
+            Properties loaded = new Properties();
+            try (InputStream inputStream = Thread.currentThread()
+                    .getContextClassLoader().getResourceAsStream(Constants.CONFIG_FILE)) {
+                if (inputStream == null) {
+                    throw new IllegalStateException("Config file " + Constants.CONFIG_FILE + " not found");
+                }
+                loaded.load(inputStream);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            Properties system = System.getProperties();
+            for (String key : system.stringPropertyNames()) {
+                if (key.startsWith(OVERRIDE_PREFIX)) {
+                    loaded.setProperty(key.substring(OVERRIDE_PREFIX.length()), system.getProperty(key));
+                }
+            }
+            properties = loaded;
+        }
+        return properties;
+    }
+
+    public static String get(String key, String defaultValue) {
+        return get().getProperty(key, defaultValue);
+    }
+}
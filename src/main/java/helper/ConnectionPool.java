@@ -0,0 +1,79 @@
+package helper;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import utils.Constants;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+/**
+ * The pool of jdbc connections used by the persistence unit "DrBoozePU".
+ * The pool can be tuned with the following keys of the config file, every key is optional:
+ * <ul>
+ * <li>jdbc_url: the url of the database (default {@value Constants#JDBC_URL})</li>
+ * <li>pool_min_idle: the minimum number of idle connections (default 2)</li>
+ * <li>pool_max_size: the maximum number of connections (default 10)</li>
+ * <li>pool_connection_timeout: the milliseconds to wait for a free connection (default 30000)</li>
+ * <li>pool_idle_timeout: the milliseconds an idle connection is kept before it is evicted (default 600000)</li>
+ * <li>pool_leak_detection_threshold: the milliseconds a connection may be held before it is
+ * reported as a possible leak, 0 disables the detection (default 10000)</li>
+ * </ul>
+ */
+public class ConnectionPool {
+
+    private static final String POOL_NAME = "DrBoozePool";
+
+    private static HikariDataSource dataSource;
+    private static PoolMetrics metrics = new PoolMetrics();
+
+    public static synchronized DataSource getDataSource() {
+        if (dataSource == null) {
+            Properties properties = Config.get();
+
+            HikariConfig config = new HikariConfig();
+            config.setPoolName(POOL_NAME);
+            config.setJdbcUrl(properties.getProperty("jdbc_url", Constants.JDBC_URL));
+            config.setUsername(properties.getProperty("jdbc_user"));
+            config.setPassword(properties.getProperty("jdbc_password"));
+            config.setMinimumIdle(Integer.parseInt(properties.getProperty("pool_min_idle", "2")));
+            config.setMaximumPoolSize(Integer.parseInt(properties.getProperty("pool_max_size", "10")));
+            config.setConnectionTimeout(Long.parseLong(properties.getProperty("pool_connection_timeout", "30000")));
+            config.setIdleTimeout(Long.parseLong(properties.getProperty("pool_idle_timeout", "600000")));
+            config.setLeakDetectionThreshold(
+                    Long.parseLong(properties.getProperty("pool_leak_detection_threshold", "10000")));
+            // EclipseLink commits itself, so the connections are handed out like a plain DriverManager would
+            config.setAutoCommit(true);
+            config.setRegisterMbeans(true);
+            config.setMetricsTrackerFactory(metrics);
+            dataSource = new HikariDataSource(config);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Returns the live statistics of the pool.
+     *
+     * @return the pool statistics or null if the pool was not started yet
+     */
+    public static synchronized HikariPoolMXBean getPoolStatistics() {
+        return dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+    }
+
+    /**
+     * Returns the metrics that are recorded by the pool, e.g. the connection acquisition latency.
+     *
+     * @return the pool metrics
+     */
+    public static PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    public static synchronized void close() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package helper;
+
+import java.time.ZoneId;
+
+/**
+ * Counts events, e.g. drinks, and their grams of alcohol per local day of a period in a single pass.
+ * The days are the indexes of primitive arrays, the first index is the day of the start of the period.
+ */
+public class DayBuckets {
+
+    private final EpochDays epochDays;
+    private final long firstDay;
+    private final int[] counts;
+    private final double[] grams;
+
+    /**
+     * @param zone  the time zone the days are calculated in
+     * @param start the epoch milliseconds of the start of the period
+     * @param end   the epoch milliseconds of the end of the period (inclusive)
+     */
+    public DayBuckets(ZoneId zone, long start, long end) {
+        this.epochDays = new EpochDays(zone);
+        this.firstDay = epochDays.of(start);
+        int days = (int) (epochDays.of(end) - firstDay) + 1;
+        this.counts = new int[Math.max(days, 0)];
+        this.grams = new double[counts.length];
+    }
+
+    /**
+     * Adds a single event.
+     *
+     * @param millis the epoch milliseconds of the event
+     * @param grams  the grams of the event
+     * @return false if the event is outside of the period
+     */
+    public boolean add(long millis, double grams) {
+        return add(millis, 1, grams);
+    }
+
+    /**
+     * Adds events of the same day.
+     *
+     * @param millis the epoch milliseconds of the events
+     * @param count  the number of events
+     * @param grams  the grams of all the events
+     * @return false if the events are outside of the period
+     */
+    public boolean add(long millis, int count, double grams) {
+        int index = indexOf(millis);
+        if (index < 0) {
+            return false;
+        }
+        counts[index] += count;
+        this.grams[index] += grams;
+        return true;
+    }
+
+    /**
+     * Returns the index of the day of the time.
+     *
+     * @param millis the epoch milliseconds
+     * @return the index or -1 if the time is outside of the period
+     */
+    public int indexOf(long millis) {
+        long index = epochDays.of(millis) - firstDay;
+        return index >= 0 && index < counts.length ? (int) index : -1;
+    }
+
+    /**
+     * @return the number of days of the period
+     */
+    public int size() {
+        return counts.length;
+    }
+
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * Returns the counts per day, the array must not be modified.
+     *
+     * @return the counts
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * Returns the grams per day, the array must not be modified.
+     *
+     * @return the grams
+     */
+    public double[] getGrams() {
+        return grams;
+    }
+
+    /**
+     * @return the sum of all counts
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -1,17 +1,81 @@
 package helper;
 
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 
+/**
+ * Hands out one {@link EntityManager} per thread, all created by a single shared {@link EntityManagerFactory}.
+ * Grizzly serves every request on one worker thread, so the entity manager of the current thread is
+ * effectively scoped to the current request and has to be released with {@link #close()} once the
+ * response is written (see {@link filters.EntityManagerFilter}).
+ */
 public class EntityManagerHelper {
-    private static EntityManager em;
+    private static final ThreadLocal<EntityManager> em = new ThreadLocal<>();
 
+    /**
+     * Returns the entity manager of the current thread and opens a new one if there is none yet.
+     *
+     * @return the entity manager of the current thread
+     */
     public static EntityManager getInstance() {
-        if (em == null) {
-            EntityManagerFactory emf = Persistence.createEntityManagerFactory("DrBoozePU");
-            em = emf.createEntityManager();
+        EntityManager entityManager = em.get();
+        if (entityManager == null || !entityManager.isOpen()) {
+            entityManager = getFactory().createEntityManager();
+            em.set(entityManager);
+        }
+        return entityManager;
+    }
+
+    /**
+     * Closes the entity manager of the current thread if there is one.
+     * A transaction that is still active at this point is rolled back.
+     */
+    public static void close() {
+        EntityManager entityManager = em.get();
+        em.remove();
+        if (entityManager != null && entityManager.isOpen()) {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    public static EntityManagerFactory getFactory() {
+        return FactoryHolder.emf;
+    }
+
+    /**
+     * Lazily creates the factory the first time it is needed, the class loader guarantees that this happens once.
+     * The connections are taken from the {@link ConnectionPool}.
+     * The keys of the config starting with "javax.persistence." or "eclipselink." override the persistence unit,
+     * e.g. to log more details.
+     * The schema is migrated by {@link SchemaMigration} before the factory is created.
+     */
+    private static class FactoryHolder {
+        private static final EntityManagerFactory emf = create();
+
+        private static EntityManagerFactory create() {
+            SchemaMigration.migrate(ConnectionPool.getDataSource());
+            return Persistence.createEntityManagerFactory("DrBoozePU", properties());
+        }
+
+        private static Map<String, Object> properties() {
+            Map<String, Object> properties = new HashMap<>();
+            Properties config = Config.get();
+            for (String key : config.stringPropertyNames()) {
+                if (key.startsWith("javax.persistence.") || key.startsWith("eclipselink.")) {
+                    properties.put(key, config.getProperty(key));
+                }
+            }
+            properties.put(PersistenceUnitProperties.NON_JTA_DATASOURCE, ConnectionPool.getDataSource());
+            return properties;
         }
-        return em;
     }
 }
@@ -0,0 +1,99 @@
+package helper;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts epoch milliseconds to the local epoch day of a time zone.
+ * The offset of the zone is kept until the next (or before the previous) offset transition,
+ * so converting times that are close to each other does not allocate anything.
+ * An instance is not thread-safe, use {@link #toEpochDay(long, ZoneId)} for a single conversion.
+ */
+public class EpochDays {
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private long validFrom = Long.MAX_VALUE;
+    private long validUntil = Long.MIN_VALUE;
+    private long offsetMillis;
+
+    public EpochDays(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+    }
+
+    /**
+     * Returns the local epoch day of the time.
+     *
+     * @param millis the epoch milliseconds
+     * @return the epoch day in the zone
+     */
+    public long of(long millis) {
+        if (millis < validFrom || millis >= validUntil) {
+            updateOffset(millis);
+        }
+        return Math.floorDiv(millis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the start of the local day.
+     *
+     * @param epochDay the epoch day
+     * @return the epoch milliseconds of the start of the day in the zone
+     */
+    public long startOf(long epochDay) {
+        return startOf(epochDay, zone);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns the local epoch day of the time.
+     *
+     * @param millis the epoch milliseconds
+     * @param zone   the time zone
+     * @return the epoch day in the zone
+     */
+    public static long toEpochDay(long millis, ZoneId zone) {
+        long offsetMillis = TimeUnit.SECONDS.toMillis(
+                zone.getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds());
+        return Math.floorDiv(millis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the start of the local day.
+     *
+     * @param epochDay the epoch day
+     * @param zone     the time zone
+     * @return the epoch milliseconds of the start of the day in the zone
+     */
+    public static long startOf(long epochDay, ZoneId zone) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private void updateOffset(long millis) {
+        Instant instant = Instant.ofEpochMilli(millis);
+        ZoneOffset offset = rules.getOffset(instant);
+        offsetMillis = TimeUnit.SECONDS.toMillis(offset.getTotalSeconds());
+        if (rules.isFixedOffset()) {
+            validFrom = Long.MIN_VALUE;
+            validUntil = Long.MAX_VALUE;
+            return;
+        }
+        ZoneOffsetTransition previous = rules.previousTransition(instant);
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        // only trust the previous transition if it leads to the current offset
+        validFrom = previous != null && previous.getOffsetAfter().equals(offset)
+                ? Math.min(millis, previous.getInstant().toEpochMilli()) : millis;
+        validUntil = next != null ? next.getInstant().toEpochMilli() : Long.MAX_VALUE;
+    }
+}
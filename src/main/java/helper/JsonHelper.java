@@ -0,0 +1,87 @@
+package helper;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes json responses directly to the output stream with a Jackson {@link JsonGenerator},
+ * so no intermediate json tree or string has to be built.
+ */
+public class JsonHelper {
+
+    private static final JsonFactory factory = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    /**
+     * Writes json with a {@link JsonGenerator}.
+     */
+    @FunctionalInterface
+    public interface JsonWriter {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * Writes a single element of a json array.
+     */
+    @FunctionalInterface
+    public interface ElementWriter<T> {
+        void write(T element, JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * Returns an entity for a response that is written when the response is sent.
+     *
+     * @param writer the writer of the json
+     * @return the streaming entity
+     */
+    public static StreamingOutput stream(JsonWriter writer) {
+        return output -> write(output, writer);
+    }
+
+    /**
+     * Returns an entity for a response that is a json array of the elements.
+     *
+     * @param elements the elements of the array
+     * @param writer   the writer of a single element
+     * @return the streaming entity
+     */
+    public static <T> StreamingOutput streamArray(Iterable<T> elements, ElementWriter<T> writer) {
+        return stream(gen -> writeArray(gen, elements, writer));
+    }
+
+    public static <T> void writeArray(JsonGenerator gen, Iterable<T> elements, ElementWriter<T> writer)
+            throws IOException {
+        gen.writeStartArray();
+        for (T element : elements) {
+            writer.write(element, gen);
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Writes the json into a byte array, e.g. to keep a pre-serialized response.
+     *
+     * @param writer the writer of the json
+     * @return the utf-8 encoded json
+     */
+    public static byte[] toBytes(JsonWriter writer) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            write(output, writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static void write(OutputStream output, JsonWriter writer) throws IOException {
+        try (JsonGenerator gen = factory.createGenerator(output)) {
+            writer.write(gen);
+        }
+    }
+}
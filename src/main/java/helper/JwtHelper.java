@@ -2,27 +2,37 @@ package helper;
 
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import utils.Constants;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class JwtHelper {
 
+    /**
+     * The maximum number of verified tokens that are cached.
+     */
+    private static final int CACHE_SIZE = 10000;
+
+    /**
+     * The time a verified token stays in the cache.
+     */
+    private static final long CACHE_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
     private static String key = null;
 
+    /**
+     * The verified tokens with their user id, shared by every instance of this class.
+     * Reads don't take a lock, the expired and the least recently used tokens are evicted when the cache is full.
+     */
+    private static final LruCache<String, VerifiedToken> cache =
+            new LruCache<>(CACHE_SIZE, verified -> verified.isExpired(System.nanoTime()));
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder cacheMisses = new LongAdder();
+
     public JwtHelper() {
         if (key == null) {
             // load the jwt key from the config file
-            try (InputStream inputStream = Thread.currentThread()
-                    .getContextClassLoader().getResourceAsStream(Constants.CONFIG_FILE)) {
-                Properties properties = new Properties();
-                properties.load(inputStream);
-                key = properties.getProperty("jwt_key");
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            key = Config.get("jwt_key", null);
         }
     }
 
@@ -33,12 +43,57 @@ public class JwtHelper {
                 .compact();
     }
 
+    /**
+     * Returns the user id of the token.
+     * The signature of a token is only verified if the token is not cached yet.
+     *
+     * @param token the json web token
+     * @return the user id
+     * @throws io.jsonwebtoken.JwtException if the token is not valid
+     */
     public long getUserId(String token) {
+        long now = System.nanoTime();
+        VerifiedToken verified = cache.get(token);
+        if (verified != null && !verified.isExpired(now)) {
+            cacheHits.increment();
+            return verified.userId;
+        }
+        cacheMisses.increment();
+
         String subject = Jwts.parser()
                 .setSigningKey(key)
                 .parseClaimsJws(token)
                 .getBody()
                 .getSubject();
-        return Long.parseLong(subject);
+        long userId = Long.parseLong(subject);
+
+        cache.put(token, new VerifiedToken(userId, now));
+        return userId;
+    }
+
+    public static long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public static long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public static int getCacheSize() {
+        return cache.size();
+    }
+
+    private static class VerifiedToken {
+        private final long userId;
+        private final long verifiedAt;
+
+        private VerifiedToken(long userId, long verifiedAt) {
+            this.userId = userId;
+            this.verifiedAt = verifiedAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - verifiedAt >= CACHE_TTL_NANOS;
+        }
     }
 }
@@ -0,0 +1,131 @@
+package helper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies with log-linear buckets like the HdrHistogram.
+ * Every power of two of microseconds is split into {@value #SUB_BUCKETS} buckets, so a recorded latency is
+ * known to within 1/{@value #SUB_BUCKETS} of its value, from 1 microsecond up to {@link #MAX_MICROS}.
+ * Recording is a single atomic increment, the bucket is found with bit operations.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The highest latency that is told apart, longer latencies are counted in the bucket of this value.
+     */
+    public static final long MAX_MICROS = (1L << 27) - 1;
+
+    private static final int BUCKETS = indexOf(MAX_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanosSum = new LongAdder();
+
+    public void record(long nanos) {
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos)), MAX_MICROS);
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        nanosSum.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getNanosSum() {
+        return nanosSum.sum();
+    }
+
+    /**
+     * Returns a copy of the counts, the counts of a running histogram are not read at a single point in time.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy);
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        // the value is m * 2^shift with SUB_BUCKETS <= m < 2 * SUB_BUCKETS
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value (inclusive) that is counted in the bucket.
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long m = SUB_BUCKETS + index % SUB_BUCKETS;
+        return ((m + 1) << shift) - 1;
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long sum = 0;
+            for (long c : counts) {
+                sum += c;
+            }
+            this.total = sum;
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        /**
+         * Returns the number of latencies up to the bound. A bucket that contains the bound is only counted
+         * if it ends at the bound, so the result can be too low by the latencies in that bucket.
+         *
+         * @param micros the bound in microseconds (inclusive)
+         * @return the number of latencies
+         */
+        public long getCountAtOrBelow(long micros) {
+            long sum = 0;
+            for (int i = 0; i < counts.length && upperBoundOf(i) <= micros; i++) {
+                sum += counts[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Returns the latency that the given percentage of the latencies do not exceed.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the upper bound of the bucket of the percentile in microseconds or 0 if nothing was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                if (sum >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
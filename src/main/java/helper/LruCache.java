@@ -0,0 +1,127 @@
+package helper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A concurrent map of about maxSize entries that evicts the least recently used entries when it is full.
+ * The entries are kept in a {@link ConcurrentHashMap}, so reads don't take a lock: a read only stamps the time
+ * of the access, with a granularity of {@value #ACCESS_GRANULARITY_MILLIS} ms.
+ * <p>
+ * Once the map exceeds maxSize, a single thread removes the stale entries and then the least recently used ones
+ * until a tenth of the map is free again, so a full pass over the map is only needed every maxSize / 10 inserts.
+ * The map can exceed maxSize by the entries that are added concurrently to a pass.
+ */
+public class LruCache<K, V> {
+
+    private static final long ACCESS_GRANULARITY_MILLIS = 10;
+
+    private final int maxSize;
+    private final int evictedSize;
+    private final Predicate<V> stale;
+    private final Map<K, Node<V>> map = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * @param maxSize the maximum number of entries
+     */
+    public LruCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param maxSize the maximum number of entries
+     * @param stale   tests if an entry expired or null if entries don't expire
+     */
+    public LruCache(int maxSize, Predicate<V> stale) {
+        this.maxSize = Math.max(maxSize, 1);
+        this.evictedSize = this.maxSize - Math.max(this.maxSize / 10, 1);
+        this.stale = stale;
+    }
+
+    /**
+     * @return the value or null if there is none, a stale value is returned as well
+     */
+    public V get(K key) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        node.touch();
+        return node.value;
+    }
+
+    public void put(K key, V value) {
+        map.put(key, new Node<>(value));
+        evictIfFull();
+    }
+
+    /**
+     * Returns the value of the key and adds the computed value if there is none, atomically.
+     * The mapping function must be cheap, it blocks other updates of the map.
+     */
+    public V computeIfAbsent(K key, Function<K, V> mappingFunction) {
+        Node<V> node = map.computeIfAbsent(key, k -> new Node<>(mappingFunction.apply(k)));
+        node.touch();
+        evictIfFull();
+        return node.value;
+    }
+
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    private void evictIfFull() {
+        if (map.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (stale != null) {
+                map.values().removeIf(node -> stale.test(node.value));
+            }
+            int excess = map.size() - evictedSize;
+            if (excess <= 0) {
+                return;
+            }
+            // every entry accessed no later than the excess-th oldest access is evicted
+            long[] accesses = map.values().stream().mapToLong(node -> node.lastAccess).sorted().toArray();
+            if (accesses.length == 0) {
+                return;
+            }
+            long threshold = accesses[Math.min(excess, accesses.length) - 1];
+            Iterator<Node<V>> iterator = map.values().iterator();
+            while (iterator.hasNext() && map.size() > evictedSize) {
+                if (iterator.next().lastAccess <= threshold) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static class Node<V> {
+        private final V value;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Node(V value) {
+            this.value = value;
+        }
+
+        private void touch() {
+            long now = System.currentTimeMillis();
+            // a write per read would make every reader of a hot entry contend on its cache line
+            if (now - lastAccess >= ACCESS_GRANULARITY_MILLIS) {
+                lastAccess = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package helper;
+
+import org.bouncycastle.util.encoders.Hex;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashes and verifies the passwords of the users on a small dedicated thread pool, so expensive hashing can't
+ * take the threads of the other requests. The request thread waits for its hash, so at most
+ * {@code password_max_pending} hashings (default half of the Grizzly worker threads, which are two per processor)
+ * are admitted at once, running or queued. A further hashing is answered with 503 SERVICE UNAVAILABLE right away
+ * instead of parking another worker thread. A hashing that timed out keeps its permit until it finished,
+ * because PBKDF2 can't be interrupted.
+ * <p>
+ * A hash is stored as {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} (base64), so the cost can be raised
+ * with the {@code password_iterations} property of the config file. Older hashes, including the previous
+ * format of a single hex encoded SHA-256 with a separate salt column, are still verified and should be replaced
+ * after a successful login, see {@link #needsRehash(String)}.
+ */
+public class PasswordHasher {
+
+    private static final String FORMAT = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int DEFAULT_ITERATIONS = 100000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int WORKER_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    private static final int MAX_PENDING = Integer.parseInt(
+            Config.get("password_max_pending", String.valueOf(Math.max(1, WORKER_THREADS / 2))));
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * The upper bounds (inclusive) of the hashing latency buckets in milliseconds, including the time in the queue.
+     * Every hashing that takes longer than the last bound is counted in an additional overflow bucket.
+     */
+    public static final long[] LATENCY_BUCKETS_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+    private static final int iterations = loadIterations();
+    private static final SecureRandom random = new SecureRandom();
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final Semaphore pending = new Semaphore(MAX_PENDING);
+    // the permits of pending bound the queue already, its own bound is a safety net
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS,
+            0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(MAX_PENDING), runnable -> {
+        Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS_MILLIS.length + 1];
+    private static final LongAdder latencyNanosSum = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+
+    static {
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Hashes the password with a new salt.
+     *
+     * @param password the password
+     * @return the hash in the current format
+     * @throws WebApplicationException with 503 SERVICE UNAVAILABLE if too many passwords are hashed at the moment
+     */
+    public static String hash(String password) {
+        return submit(() -> {
+            byte[] salt = new byte[SALT_BYTES];
+            random.nextBytes(salt);
+            byte[] hash = pbkdf2(password, salt, iterations);
+            Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+            return FORMAT + '$' + iterations + '$' + encoder.encodeToString(salt) + '$' + encoder.encodeToString(hash);
+        });
+    }
+
+    /**
+     * Checks if the password matches the stored hash.
+     *
+     * @param password   the password
+     * @param storedHash the stored hash
+     * @param legacySalt the salt of the legacy format, null for the current format
+     * @return true if the password is correct
+     * @throws WebApplicationException with 503 SERVICE UNAVAILABLE if too many passwords are hashed at the moment
+     */
+    public static boolean verify(String password, String storedHash, String legacySalt) {
+        if (password == null || storedHash == null) {
+            return false;
+        }
+        String[] parts = storedHash.split("\\$");
+        if (parts.length == 4 && parts[0].equals(FORMAT)) {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return submit(() -> MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations)));
+        }
+        if (legacySalt == null) {
+            return false;
+        }
+        // the legacy format is cheap enough to be verified on the calling thread
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(Hex.decode(legacySalt));
+            byte[] hash = md.digest(password.getBytes(StandardCharsets.UTF_8));
+            return MessageDigest.isEqual(Hex.encode(hash), storedHash.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns true if the hash is not in the current format or its cost is lower than the current one.
+     *
+     * @param storedHash the stored hash
+     * @return true if the password should be hashed again
+     */
+    public static boolean needsRehash(String storedHash) {
+        String[] parts = storedHash.split("\\$");
+        return parts.length != 4 || !parts[0].equals(FORMAT) || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    /**
+     * Stops the hashing threads, the queued hashes are still processed.
+     */
+    public static void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the number of hashings per bucket of {@link #LATENCY_BUCKETS_MILLIS},
+     * the last element contains the hashings that exceeded every bound.
+     *
+     * @return the (non cumulative) bucket counts
+     */
+    public static long[] getLatencyBucketCounts() {
+        long[] counts = new long[latencyBuckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = latencyBuckets[i].sum();
+        }
+        return counts;
+    }
+
+    public static long getLatencyNanosSum() {
+        return latencyNanosSum.sum();
+    }
+
+    /**
+     * Returns the number of hashings that were rejected because too many were pending or they timed out.
+     */
+    public static long getRejected() {
+        return rejected.sum();
+    }
+
+    public static int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public static int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    private static <T> T submit(Callable<T> task) {
+        if (!pending.tryAcquire()) {
+            throw overloaded();
+        }
+        // the permit is released when the hashing finished, not when the caller stopped waiting
+        FutureTask<T> future = new FutureTask<>(() -> {
+            try {
+                return task.call();
+            } finally {
+                pending.release();
+            }
+        });
+        long start = System.nanoTime();
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            throw overloaded();
+        }
+        try {
+            T result = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            record(System.nanoTime() - start);
+            return result;
+        } catch (TimeoutException e) {
+            abandon(future);
+            throw overloaded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(future);
+            throw overloaded();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Drops a hashing nobody waits for anymore if it did not start yet, a running hashing can't be stopped.
+     */
+    private static void abandon(FutureTask<?> future) {
+        if (executor.remove(future)) {
+            pending.release();
+        }
+    }
+
+    private static void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MILLIS.length && millis > LATENCY_BUCKETS_MILLIS[bucket]) {
+            bucket++;
+        }
+        latencyBuckets[bucket].increment();
+        latencyNanosSum.add(nanos);
+    }
+
+    private static WebApplicationException overloaded() {
+        rejected.increment();
+        return new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, 1)
+                .build());
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static int loadIterations() {
+        return Integer.parseInt(Config.get("password_iterations", String.valueOf(DEFAULT_ITERATIONS)));
+    }
+}
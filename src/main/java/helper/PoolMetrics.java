@@ -0,0 +1,91 @@
+package helper;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the metrics of the {@link ConnectionPool}.
+ * The time it takes to acquire a connection is kept in a histogram with fixed buckets,
+ * so a starving pool can be told apart from slow queries.
+ */
+public class PoolMetrics implements MetricsTrackerFactory, IMetricsTracker {
+
+    /**
+     * The upper bounds (inclusive) of the acquisition latency buckets in milliseconds.
+     * Every acquisition that takes longer than the last bound is counted in an additional overflow bucket.
+     */
+    public static final long[] ACQUIRE_BUCKETS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 5000};
+
+    private final LongAdder[] acquireBuckets = new LongAdder[ACQUIRE_BUCKETS_MILLIS.length + 1];
+    private final LongAdder acquireNanosSum = new LongAdder();
+    private final LongAdder usageMillisSum = new LongAdder();
+    private final LongAdder usageCount = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public PoolMetrics() {
+        for (int i = 0; i < acquireBuckets.length; i++) {
+            acquireBuckets[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedAcquiredNanos);
+        int bucket = 0;
+        while (bucket < ACQUIRE_BUCKETS_MILLIS.length && millis > ACQUIRE_BUCKETS_MILLIS[bucket]) {
+            bucket++;
+        }
+        acquireBuckets[bucket].increment();
+        acquireNanosSum.add(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageMillisSum.add(elapsedBorrowedMillis);
+        usageCount.increment();
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Returns the number of acquisitions per bucket of {@link #ACQUIRE_BUCKETS_MILLIS},
+     * the last element contains the acquisitions that exceeded every bound.
+     *
+     * @return the (non cumulative) bucket counts
+     */
+    public long[] getAcquireBucketCounts() {
+        long[] counts = new long[acquireBuckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = acquireBuckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long getAcquireNanosSum() {
+        return acquireNanosSum.sum();
+    }
+
+    public long getUsageMillisSum() {
+        return usageMillisSum.sum();
+    }
+
+    public long getUsageCount() {
+        return usageCount.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
@@ -0,0 +1,254 @@
+package helper;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import filters.MetricsFilter;
+import filters.RateLimitFilter;
+import mail.MailDispatcher;
+import scheduler.ChallengeScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes the metrics of the server in the Prometheus text format (version 0.0.4).
+ * Every value is read from the counters the components keep anyway, so a scrape does not touch the database
+ * and the request path only pays for the counters themselves.
+ */
+public class PrometheusExporter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The bucket bounds of the request latency in seconds.
+     */
+    private static final double[] DURATION_BUCKETS_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final MailDispatcher mailDispatcher;
+    private final ChallengeScheduler challengeScheduler;
+
+    public PrometheusExporter(MailDispatcher mailDispatcher, ChallengeScheduler challengeScheduler) {
+        this.mailDispatcher = mailDispatcher;
+        this.challengeScheduler = challengeScheduler;
+    }
+
+    /**
+     * Returns the current value of every metric.
+     *
+     * @return the metrics in the Prometheus text format
+     */
+    public String scrape() {
+        Writer out = new Writer();
+        writeHttp(out);
+        writePool(out);
+        writeSecurity(out);
+        writeBackground(out);
+        return out.toString();
+    }
+
+    private void writeHttp(Writer out) {
+        out.family("booze_http_requests_in_flight", "gauge", "Requests in progress");
+        out.sample("booze_http_requests_in_flight", MetricsFilter.getInFlight());
+
+        // read every histogram once, so the buckets, the quantiles and the count of a route agree
+        List<MetricsFilter.Route> routes = new ArrayList<>(MetricsFilter.getRoutes());
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        for (MetricsFilter.Route route : routes) {
+            snapshots.add(route.getHistogram().snapshot());
+        }
+
+        out.family("booze_http_request_duration_seconds", "histogram", "Latency of the requests per route");
+        for (int i = 0; i < routes.size(); i++) {
+            MetricsFilter.Route route = routes.get(i);
+            LatencyHistogram.Snapshot snapshot = snapshots.get(i);
+            for (double bound : DURATION_BUCKETS_SECONDS) {
+                out.sample("booze_http_request_duration_seconds_bucket",
+                        snapshot.getCountAtOrBelow(Math.round(bound * 1e6)),
+                        "method", route.getMethod(), "route", route.getPath(), "le", Writer.format(bound));
+            }
+            out.sample("booze_http_request_duration_seconds_bucket", snapshot.getCount(),
+                    "method", route.getMethod(), "route", route.getPath(), "le", "+Inf");
+            out.sample("booze_http_request_duration_seconds_sum", route.getHistogram().getNanosSum() / 1e9,
+                    "method", route.getMethod(), "route", route.getPath());
+            out.sample("booze_http_request_duration_seconds_count", snapshot.getCount(),
+                    "method", route.getMethod(), "route", route.getPath());
+        }
+
+        out.family("booze_http_request_latency_seconds", "gauge", "Latency percentiles of the requests per route since the start");
+        for (int i = 0; i < routes.size(); i++) {
+            MetricsFilter.Route route = routes.get(i);
+            for (double quantile : QUANTILES) {
+                out.sample("booze_http_request_latency_seconds",
+                        snapshots.get(i).getValueAtPercentile(quantile * 100) / 1e6,
+                        "method", route.getMethod(), "route", route.getPath(), "quantile", Writer.format(quantile));
+            }
+        }
+
+        out.family("booze_http_responses_total", "counter", "Responses per route and status code");
+        for (MetricsFilter.Route route : routes) {
+            for (Map.Entry<Integer, LongAdder> status : route.getStatuses().entrySet()) {
+                out.sample("booze_http_responses_total", status.getValue().sum(),
+                        "method", route.getMethod(), "route", route.getPath(), "status", status.getKey().toString());
+            }
+        }
+
+        out.family("booze_db_statements_total", "counter", "SQL statements executed per route");
+        for (MetricsFilter.Route route : routes) {
+            out.sample("booze_db_statements_total", route.getDbStatements(),
+                    "method", route.getMethod(), "route", route.getPath());
+        }
+        out.family("booze_db_seconds_total", "counter", "Time spent executing SQL statements per route");
+        for (MetricsFilter.Route route : routes) {
+            out.sample("booze_db_seconds_total", route.getDbNanos() / 1e9,
+                    "method", route.getMethod(), "route", route.getPath());
+        }
+        out.family("booze_db_over_budget_total", "counter", "Requests over the query budget per route");
+        for (MetricsFilter.Route route : routes) {
+            out.sample("booze_db_over_budget_total", route.getOverBudget(),
+                    "method", route.getMethod(), "route", route.getPath());
+        }
+
+        out.family("booze_admission_in_flight", "gauge", "Requests admitted by the rate limit filter and in progress");
+        out.sample("booze_admission_in_flight", RateLimitFilter.getInFlight());
+        out.family("booze_rate_limited_total", "counter", "Requests rejected with 429");
+        out.sample("booze_rate_limited_total", RateLimitFilter.getRateLimited());
+        out.family("booze_shed_total", "counter", "Requests rejected with 503 because the server was overloaded");
+        out.sample("booze_shed_total", RateLimitFilter.getShed());
+    }
+
+    private void writePool(Writer out) {
+        HikariPoolMXBean pool = ConnectionPool.getPoolStatistics();
+        if (pool != null) {
+            out.family("booze_pool_connections", "gauge", "Connections of the pool by state");
+            out.sample("booze_pool_connections", pool.getActiveConnections(), "state", "active");
+            out.sample("booze_pool_connections", pool.getIdleConnections(), "state", "idle");
+            out.family("booze_pool_threads_awaiting", "gauge", "Threads waiting for a connection");
+            out.sample("booze_pool_threads_awaiting", pool.getThreadsAwaitingConnection());
+        }
+        PoolMetrics metrics = ConnectionPool.getMetrics();
+        out.histogram("booze_pool_acquire_seconds", "Time to acquire a connection",
+                PoolMetrics.ACQUIRE_BUCKETS_MILLIS, metrics.getAcquireBucketCounts(), metrics.getAcquireNanosSum() / 1e9);
+        out.family("booze_pool_usage_seconds_total", "counter", "Time the connections were borrowed");
+        out.sample("booze_pool_usage_seconds_total", metrics.getUsageMillisSum() / 1e3);
+        out.family("booze_pool_usages_total", "counter", "Connections that were borrowed and returned");
+        out.sample("booze_pool_usages_total", metrics.getUsageCount());
+        out.family("booze_pool_timeouts_total", "counter", "Connection requests that timed out");
+        out.sample("booze_pool_timeouts_total", metrics.getTimeouts());
+    }
+
+    private void writeSecurity(Writer out) {
+        out.family("booze_jwt_cache_hits_total", "counter", "Tokens found in the cache of verified tokens");
+        out.sample("booze_jwt_cache_hits_total", JwtHelper.getCacheHits());
+        out.family("booze_jwt_cache_misses_total", "counter", "Tokens whose signature had to be verified");
+        out.sample("booze_jwt_cache_misses_total", JwtHelper.getCacheMisses());
+        out.family("booze_jwt_cache_size", "gauge", "Verified tokens in the cache");
+        out.sample("booze_jwt_cache_size", JwtHelper.getCacheSize());
+
+        out.histogram("booze_password_hash_seconds", "Time to hash or verify a password including the queue",
+                PasswordHasher.LATENCY_BUCKETS_MILLIS, PasswordHasher.getLatencyBucketCounts(),
+                PasswordHasher.getLatencyNanosSum() / 1e9);
+        out.family("booze_password_rejected_total", "counter", "Hashings rejected because the hasher was busy");
+        out.sample("booze_password_rejected_total", PasswordHasher.getRejected());
+        out.family("booze_password_queue_size", "gauge", "Hashings waiting for a thread");
+        out.sample("booze_password_queue_size", PasswordHasher.getQueueSize());
+        out.family("booze_password_active_threads", "gauge", "Threads hashing at the moment");
+        out.sample("booze_password_active_threads", PasswordHasher.getActiveThreads());
+    }
+
+    private void writeBackground(Writer out) {
+        out.family("booze_mail_queue_depth", "gauge", "Emails in the outbox after the last run of the dispatcher");
+        out.sample("booze_mail_queue_depth", mailDispatcher.getQueueDepth());
+        out.family("booze_mail_sent_total", "counter", "Emails sent");
+        out.sample("booze_mail_sent_total", mailDispatcher.getSent());
+        out.family("booze_mail_failed_total", "counter", "Failed attempts to send an email");
+        out.sample("booze_mail_failed_total", mailDispatcher.getFailed());
+        out.family("booze_mail_dropped_total", "counter", "Emails dropped after the last attempt");
+        out.sample("booze_mail_dropped_total", mailDispatcher.getDropped());
+
+        out.family("booze_challenge_checked_users_total", "counter", "Users whose challenges were checked");
+        out.sample("booze_challenge_checked_users_total", challengeScheduler.getCheckedUsers());
+        out.family("booze_challenge_last_run_seconds", "gauge", "Duration of the last run of the challenge scheduler");
+        out.sample("booze_challenge_last_run_seconds", challengeScheduler.getLastRunMillis() / 1e3);
+        out.family("booze_challenge_last_run_users_per_second", "gauge", "Users checked per second in the last run");
+        out.sample("booze_challenge_last_run_users_per_second", challengeScheduler.getLastRunUsersPerSecond());
+    }
+
+    /**
+     * Appends the lines of the text format.
+     */
+    private static class Writer {
+        private final StringBuilder out = new StringBuilder(8192);
+
+        private void family(String name, String type, String help) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+
+        /**
+         * @param labels the names and values of the labels, alternating
+         */
+        private void sample(String name, double value, String... labels) {
+            out.append(name);
+            if (labels.length > 0) {
+                out.append('{');
+                for (int i = 0; i < labels.length; i += 2) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    out.append(labels[i]).append("=\"");
+                    escape(labels[i + 1]);
+                    out.append('"');
+                }
+                out.append('}');
+            }
+            out.append(' ').append(format(value)).append('\n');
+        }
+
+        /**
+         * Writes a histogram with the fixed bucket bounds of {@link PoolMetrics} and {@link PasswordHasher}.
+         *
+         * @param boundsMillis the upper bounds of the buckets in milliseconds
+         * @param counts       the non cumulative counts including the overflow bucket
+         * @param sumSeconds   the sum of every value in seconds
+         */
+        private void histogram(String name, String help, long[] boundsMillis, long[] counts, double sumSeconds) {
+            family(name, "histogram", help);
+            long cumulative = 0;
+            for (int i = 0; i < boundsMillis.length; i++) {
+                cumulative += counts[i];
+                sample(name + "_bucket", cumulative, "le", format(boundsMillis[i] / 1e3));
+            }
+            cumulative += counts[boundsMillis.length];
+            sample(name + "_bucket", cumulative, "le", "+Inf");
+            sample(name + "_sum", sumSeconds);
+            sample(name + "_count", cumulative);
+        }
+
+        private void escape(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+
+        private static String format(double value) {
+            if (value == (long) value) {
+                return Long.toString((long) value);
+            }
+            return Double.toString(value);
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package helper;
+
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attributes the SQL statements and the time spent in the database to the request of the current thread.
+ * EclipseLink calls the profiler around the execution of every statement and around fetching its rows,
+ * the profiler is installed by the persistence unit (eclipselink.profiler).
+ * <p>
+ * A request is over budget if it executes more than query_budget statements (default 20) or the same
+ * statement more than query_repeat_limit times (default 5), which usually is a lazy relation loaded
+ * once per row (N+1). Statements outside of a request, e.g. of the background tasks, are not recorded.
+ */
+public class QueryProfiler extends SessionProfilerAdapter {
+
+    private static final int BUDGET = Integer.parseInt(Config.get("query_budget", "20"));
+    private static final int REPEAT_LIMIT = Integer.parseInt(Config.get("query_repeat_limit", "5"));
+
+    private static final ThreadLocal<Profile> current = new ThreadLocal<>();
+
+    /**
+     * Starts recording the statements of the current thread, a profile that was not ended is discarded.
+     */
+    public static void begin() {
+        current.set(new Profile());
+    }
+
+    /**
+     * Returns the profile of the current thread without ending it.
+     *
+     * @return the profile or null if none was started
+     */
+    public static Profile get() {
+        return current.get();
+    }
+
+    /**
+     * Stops recording the statements of the current thread.
+     *
+     * @return the profile or null if none was started
+     */
+    public static Profile end() {
+        Profile profile = current.get();
+        current.remove();
+        return profile;
+    }
+
+    @Override
+    public void startOperationProfile(String operationName, DatabaseQuery query, int weight) {
+        Profile profile = current.get();
+        if (profile == null) {
+            return;
+        }
+        if (SessionProfiler.SqlPrepare.equals(operationName)) {
+            profile.prepared = true;
+        } else if (isTimed(operationName) && profile.depth++ == 0) {
+            profile.startNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void endOperationProfile(String operationName, DatabaseQuery query, int weight) {
+        Profile profile = current.get();
+        // only the outermost timer is timed, the fetch of the rows can run within the execution
+        if (profile != null && isTimed(operationName) && profile.depth > 0 && --profile.depth == 0) {
+            profile.dbNanos += System.nanoTime() - profile.startNanos;
+            // closing the statement is timed as an execution too, so a statement is counted once after its prepare
+            if (SessionProfiler.StatementExecute.equals(operationName) && profile.prepared) {
+                profile.prepared = false;
+                profile.executed(query);
+            }
+        }
+    }
+
+    @Override
+    public int getProfileWeight() {
+        return SessionProfiler.ALL;
+    }
+
+    private static boolean isTimed(String operationName) {
+        return SessionProfiler.StatementExecute.equals(operationName) || SessionProfiler.RowFetch.equals(operationName);
+    }
+
+    /**
+     * The statements of a single request, only used by the thread of the request.
+     */
+    public static class Profile {
+        private final long beginNanos = System.nanoTime();
+        private boolean prepared;
+        private int depth;
+        private long startNanos;
+        private long dbNanos;
+        private int statements;
+        private Map<String, Integer> executions;
+        private String mostRepeated;
+        private int mostRepeatedCount;
+
+        private void executed(DatabaseQuery query) {
+            statements++;
+            if (executions == null) {
+                executions = new HashMap<>();
+            }
+            String sql = query != null && query.getSQLString() != null ? query.getSQLString() : String.valueOf(query);
+            int count = executions.merge(sql, 1, Integer::sum);
+            if (count > mostRepeatedCount) {
+                mostRepeatedCount = count;
+                mostRepeated = sql;
+            }
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        /**
+         * Returns the time spent executing the statements and fetching their rows.
+         */
+        public long getDbNanos() {
+            return dbNanos;
+        }
+
+        /**
+         * Returns the time since the profile was started.
+         */
+        public long getElapsedNanos() {
+            return System.nanoTime() - beginNanos;
+        }
+
+        /**
+         * Returns the statement that was executed most often, e.g. the lazy load of an N+1.
+         *
+         * @return the SQL or null if no statement was executed
+         */
+        public String getMostRepeated() {
+            return mostRepeated;
+        }
+
+        public int getMostRepeatedCount() {
+            return mostRepeatedCount;
+        }
+
+        public boolean isOverBudget() {
+            return statements > BUDGET || mostRepeatedCount > REPEAT_LIMIT;
+        }
+    }
+}
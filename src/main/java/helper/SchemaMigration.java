@@ -0,0 +1,37 @@
+package helper;
+
+import org.flywaydb.core.Flyway;
+
+import javax.sql.DataSource;
+import java.util.logging.Logger;
+
+/**
+ * Migrates the schema of the database with the versioned scripts in src/main/resources/db/migration,
+ * every change of an entity needs a new script there. The applied versions are recorded in the table
+ * flyway_schema_history.
+ * <p>
+ * A database that was created before the migrations were introduced is marked as version 1 (the baseline)
+ * instead of running the baseline script, an empty database is created from the scripts.
+ */
+public class SchemaMigration {
+
+    private static final String LOCATION = "classpath:db/migration";
+
+    private static Logger LOG = Logger.getLogger(SchemaMigration.class.getName());
+
+    /**
+     * Applies every script that was not applied yet. Has to run before the persistence unit is used.
+     *
+     * @param dataSource the database to migrate
+     */
+    public static void migrate(DataSource dataSource) {
+        int applied = Flyway.configure()
+                .dataSource(dataSource)
+                .locations(LOCATION)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+        LOG.info("Applied " + applied + " schema migrations");
+    }
+}
@@ -0,0 +1,149 @@
+package helper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket per key, e.g. per user id or ip address.
+ * The buckets are kept in a map of at most maxKeys keys and a bucket that refilled completely is removed,
+ * which does not change the limit because a missing bucket is full. The buckets are updated under striped locks.
+ * If the map is full, the new keys share a single overflow bucket until buckets were removed again.
+ */
+public class TokenBuckets {
+
+    /**
+     * The tokens are counted in thousandths, so slow refill rates don't get lost by rounding.
+     */
+    private static final long MILLI_TOKENS = 1000;
+
+    private static final int LOCK_STRIPES = 256;
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final Map<Object, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Bucket overflow;
+    private final AtomicLong nextSweep = new AtomicLong();
+    private final int maxKeys;
+    private final long capacity;
+    private final double refillPerMilli;
+
+    /**
+     * @param maxKeys         the maximum number of keys with an own bucket
+     * @param capacity        the maximum number of tokens of a bucket, i.e. the allowed burst
+     * @param tokensPerSecond the number of tokens that are added per second, has to be positive
+     * @throws IllegalArgumentException if tokensPerSecond is not positive
+     */
+    public TokenBuckets(int maxKeys, int capacity, double tokensPerSecond) {
+        if (!(tokensPerSecond > 0)) {
+            throw new IllegalArgumentException("The tokens per second have to be positive: " + tokensPerSecond);
+        }
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        this.maxKeys = Math.max(maxKeys, 1);
+        this.capacity = Math.max(capacity, 1) * MILLI_TOKENS;
+        // tokens per second are milli tokens per millisecond
+        this.refillPerMilli = tokensPerSecond;
+        this.overflow = new Bucket(this.capacity, System.currentTimeMillis());
+    }
+
+    /**
+     * Takes a token from the bucket of the key.
+     *
+     * @param key the key, e.g. the user id or the ip address
+     * @return 0 if a token was taken, otherwise the milliseconds until a token is available
+     */
+    public long tryAcquire(Object key) {
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+        while (true) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = buckets.size() < maxKeys
+                        ? buckets.computeIfAbsent(key, k -> new Bucket(capacity, now))
+                        : overflow;
+            }
+            synchronized (bucket == overflow ? overflow : lockOf(key)) {
+                // the bucket might have been removed since it was found
+                if (bucket.removed) {
+                    continue;
+                }
+                long tokens = refill(bucket, now);
+                if (tokens < MILLI_TOKENS) {
+                    return (long) Math.ceil((MILLI_TOKENS - tokens) / refillPerMilli);
+                }
+                bucket.tokens = tokens - MILLI_TOKENS;
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys that have an own bucket.
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Removes the buckets that refilled completely, at most once per {@value #SWEEP_INTERVAL_MILLIS} ms.
+     */
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_MILLIS)) {
+            return;
+        }
+        for (Map.Entry<Object, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            synchronized (lockOf(entry.getKey())) {
+                if (refill(bucket, now) >= capacity) {
+                    bucket.removed = true;
+                    buckets.remove(entry.getKey(), bucket);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the tokens since the last refill, has to be called with the lock of the bucket.
+     *
+     * @return the tokens of the bucket
+     */
+    private long refill(Bucket bucket, long now) {
+        long refill = (long) (Math.max(0, now - bucket.last) * refillPerMilli);
+        if (refill > 0) {
+            bucket.tokens = Math.min(capacity, bucket.tokens + refill);
+            bucket.last = now;
+        }
+        return bucket.tokens;
+    }
+
+    private Object lockOf(Object key) {
+        return locks[spread(key.hashCode()) & (LOCK_STRIPES - 1)];
+    }
+
+    private static int spread(int hash) {
+        // the finalizer of murmur3, so sequential ids are spread over the stripes
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * The tokens of a single key, guarded by the lock of the key.
+     */
+    private static class Bucket {
+        private long tokens;
+        private long last;
+        private boolean removed;
+
+        private Bucket(long tokens, long last) {
+            this.tokens = tokens;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package helper;
+
+import java.security.Principal;
+
+/**
+ * The authenticated user of a request, resolved once from the json web token by {@link filters.JwtFilter}.
+ */
+public class UserPrincipal implements Principal {
+
+    private final long id;
+
+    public UserPrincipal(long id) {
+        this.id = id;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return String.valueOf(id);
+    }
+}
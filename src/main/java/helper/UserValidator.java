@@ -0,0 +1,54 @@
+package helper;
+
+/**
+ * Validates the input of the users, e.g. when an user registers or sets the details.
+ */
+public class UserValidator {
+
+    public static boolean validateUsername(String username) {
+        if (username != null) {
+            return (username.length() >= 4 && username.length() <= 25);
+        }
+        return false;
+    }
+
+    public static boolean validatePassword(String password) {
+        if (password != null) {
+            return (password.length() >= 8 && password.length() <= 25
+                    && password.matches("^.*(?=.{8,})(?=.*\\d)((?=.*[a-z]))((?=.*[A-Z])).*$"));
+        }
+        return false;
+    }
+
+    public static boolean validateEmail(String email) {
+        if (email != null) {
+            return (email.length() >= 6 && email.length() <= 100
+                    && email.matches("^(([^<>()\\[\\]\\\\.,;:\\s@\"]+(\\.[^<>()\\[\\]\\\\.,;:\\s@\"]+)*)" +
+                    "|(\".+\"))@((\\[[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}])|(([a-zA-Z\\-0-9]+\\.)" +
+                    "+[a-zA-Z]{2,}))$"));
+        }
+        return false;
+    }
+
+    public static boolean validateName(String firstName, String lastName) {
+        if (firstName != null && lastName != null) {
+            return firstName.length() <= 100 && lastName.length() <= 100;
+        }
+        return false;
+    }
+
+    public static boolean validateGender(String gender) {
+        if (gender != null) {
+            gender = gender.toUpperCase();
+            return gender.equals("M") || gender.equals("F");
+        }
+        return false;
+    }
+
+    public static boolean validateHeightWeight(double height, double weight) {
+        if (height >= 150.0 && height <= 230.0) {
+            return (weight >= 30 && weight <= 200);
+        }
+        return false;
+    }
+}
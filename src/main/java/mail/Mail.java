@@ -1,7 +1,9 @@
 package mail;
 
+import data.entities.MailOutbox;
 import data.entities.User;
 import data.entities.VerificationToken;
+import helper.Config;
 import utils.Constants;
 
 import javax.mail.Message;
@@ -10,71 +12,111 @@ import javax.mail.Session;
 import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.Properties;
 
 import static javax.mail.Message.RecipientType;
 
+/**
+ * Creates the emails and sends them over a single SMTP connection that is kept open between the emails.
+ * The server can be changed in the config file (email_host, email_port, email_username and email_starttls),
+ * e.g. to send the emails to a local SMTP server.
+ * An instance is not thread-safe.
+ */
 public class Mail {
 
+    private String host;
+    private String username;
     private String emailPassword;
     private Session session;
+    private Transport transport;
 
     public Mail() {
         // load the email password from the config file
-        try (InputStream inputStream = Thread.currentThread()
-                .getContextClassLoader().getResourceAsStream(Constants.CONFIG_FILE)) {
-            Properties configProperties = new Properties();
-            configProperties.load(inputStream);
-            emailPassword = configProperties.getProperty("email_password");
+        Properties configProperties = Config.get();
+        emailPassword = configProperties.getProperty("email_password");
+        host = configProperties.getProperty("email_host", "smtp.gmail.com");
+        username = configProperties.getProperty("email_username", "dr.boozeteam@gmail.com");
 
-            // setup properties
-            Properties sessionProperties = System.getProperties();
-            sessionProperties.put("mail.smtp.port", "587");
-            sessionProperties.put("mail.smtp.auth", "true");
-            sessionProperties.put("mail.smtp.starttls.enable", "true");
+        // setup properties
+        Properties sessionProperties = new Properties();
+        sessionProperties.put("mail.smtp.port", configProperties.getProperty("email_port", "587"));
+        sessionProperties.put("mail.smtp.auth", String.valueOf(emailPassword != null));
+        sessionProperties.put("mail.smtp.starttls.enable", configProperties.getProperty("email_starttls", "true"));
+        sessionProperties.put("mail.smtp.connectiontimeout", "10000");
+        sessionProperties.put("mail.smtp.timeout", "10000");
 
-            // setup mail session
-            session = Session.getDefaultInstance(sessionProperties, null);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        // setup mail session
+        session = Session.getInstance(sessionProperties, null);
     }
 
-    public void sendConfirmation(User user, VerificationToken verificationToken) {
-        try {
-            MimeMessage message = new MimeMessage(session);
-            message.addRecipients(RecipientType.TO, String.valueOf(new InternetAddress(user.getEmail())));
-            message.setSubject("Welcome to Dr. Booze");
-            String mailBody =
-                    "<h1>Welcome to Dr. Booze</h1><br>" +
-                            "<a href='" + Constants.EMAIL_URI + "/auth/verify/" + verificationToken.getToken()
-                            + "'>Confirm your email</a>";
-            transport(message, mailBody);
-        } catch (MessagingException ex) {
-            ex.printStackTrace();
+    /**
+     * Creates the email to confirm the email address of a new user.
+     */
+    public static MailOutbox createConfirmation(User user, VerificationToken verificationToken) {
+        String mailBody =
+                "<h1>Welcome to Dr. Booze</h1><br>" +
+                        "<a href='" + Constants.EMAIL_URI + "/auth/verify/" + verificationToken.getToken()
+                        + "'>Confirm your email</a>";
+        return new MailOutbox(user.getEmail(), "Welcome to Dr. Booze", mailBody);
+    }
+
+    /**
+     * Creates the email containing the pin to reset the password.
+     */
+    public static MailOutbox createPasswordReset(User user, int pin) {
+        String mailBody =
+                "<h1>Your pin to reset the password</h1><br>" + "<p>The pin is " + pin + "</p>";
+        return new MailOutbox(user.getEmail(), "Reset your password", mailBody);
+    }
+
+    /**
+     * Sends the email, the connection is opened if it is not open yet.
+     *
+     * @param mail the email
+     * @throws MessagingException if the email could not be sent
+     */
+    public void send(MailOutbox mail) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.addRecipient(RecipientType.TO, new InternetAddress(mail.getRecipient()));
+        message.setSubject(mail.getSubject());
+        message.setContent(mail.getBody(), "text/html");
+        transport(message);
+    }
+
+    /**
+     * Closes the connection, it is opened again by the next email.
+     */
+    public void close() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+                // the connection is discarded anyway
+            }
+            transport = null;
         }
     }
 
-    public void resetPasswordConfirmation(User user, int pin) {
+    private void transport(Message message) throws MessagingException {
+        if (transport == null) {
+            connect();
+        }
         try {
-            MimeMessage message = new MimeMessage(session);
-            message.addRecipients(RecipientType.TO, String.valueOf(new InternetAddress(user.getEmail())));
-            message.setSubject("Reset your password");
-            String mailBody =
-                    "<h1>Your pin to reset the password</h1><br>" + "<p>The pin is " + pin + "</p>";
-            transport(message, mailBody);
-        } catch (MessagingException ex) {
-            ex.printStackTrace();
+            transport.sendMessage(message, message.getAllRecipients());
+        } catch (MessagingException e) {
+            if (transport.isConnected()) {
+                throw e;
+            }
+            // the server closed the idle connection, connect again once
+            close();
+            connect();
+            transport.sendMessage(message, message.getAllRecipients());
         }
     }
 
-    private void transport(Message message, String mailBody) throws MessagingException {
-        message.setContent(mailBody, "text/html");
-        Transport transport = session.getTransport("smtp");
-        transport.connect("smtp.gmail.com", "dr.boozeteam@gmail.com", emailPassword);
-        transport.sendMessage(message, message.getAllRecipients());
-        transport.close();
+    private void connect() throws MessagingException {
+        Transport connecting = session.getTransport("smtp");
+        connecting.connect(host, username, emailPassword);
+        transport = connecting;
     }
 }
@@ -0,0 +1,237 @@
+package mail;
+
+import data.entities.MailOutbox;
+import helper.EntityManagerHelper;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the emails of the {@link MailOutbox} in the background.
+ * The due emails are read in batches of {@value #BATCH_SIZE} and sent over a single SMTP connection,
+ * no transaction is open while an email is sent.
+ * An email whose recipient was rejected is retried with an exponential backoff and dropped after
+ * {@value #MAX_ATTEMPTS} attempts, a broken connection stops the batch without counting an attempt.
+ */
+public class MailDispatcher {
+
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long CLAIM_SECONDS = TimeUnit.MINUTES.toSeconds(10);
+    private static final long PERIOD_SECONDS = 5;
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+    private static final long MAX_BACKOFF_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+    private static Logger LOG = Logger.getLogger(MailDispatcher.class.getName());
+
+    private final Mail mail;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long queueDepth;
+
+    /**
+     * @param mail     the mail that is only used by this dispatcher
+     * @param executor the executor that runs the dispatcher
+     */
+    public MailDispatcher(Mail mail, ScheduledExecutorService executor) {
+        this.mail = mail;
+        this.executor = executor;
+    }
+
+    public synchronized void start() {
+        task = executor.scheduleWithFixedDelay(this::run, 0, PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops sending, waits for the current run and closes the connection.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+        synchronized (mail) {
+            mail.close();
+        }
+    }
+
+    /**
+     * Sends every due email.
+     */
+    public void run() {
+        // the mail is not thread-safe
+        synchronized (mail) {
+            sendDue();
+        }
+    }
+
+    private void sendDue() {
+        try {
+            int count;
+            do {
+                count = sendBatch();
+            } while (count == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+            queueDepth = EntityManagerHelper.getInstance()
+                    .createNamedQuery("MailOutbox.count", Long.class)
+                    .getSingleResult();
+            if (queueDepth == 0) {
+                // don't keep the connection open while there is nothing to send
+                mail.close();
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the scheduled task
+            LOG.log(Level.WARNING, "Failed to send the emails", e);
+        } finally {
+            EntityManagerHelper.close();
+        }
+    }
+
+    /**
+     * Sends a batch of due emails.
+     * The batch is claimed in a short transaction by moving the next attempt of its emails
+     * {@value #CLAIM_SECONDS} seconds ahead, so the emails are sent without holding a connection of the pool
+     * and a crash in between only delays them. The result is written in a second short transaction.
+     * The batch is stopped at the first email that failed because of the connection,
+     * that email and the rest are due again.
+     *
+     * @return the number of emails in the batch or 0 if the batch was stopped
+     */
+    private int sendBatch() {
+        List<MailOutbox> batch = claimBatch();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int count = batch.size();
+        List<MailOutbox> sentMails = new ArrayList<>(count);
+        Map<MailOutbox, SendFailedException> failedMails = new LinkedHashMap<>();
+        List<MailOutbox> unsentMails = Collections.emptyList();
+        for (int i = 0; i < batch.size(); i++) {
+            MailOutbox outbox = batch.get(i);
+            try {
+                mail.send(outbox);
+                sentMails.add(outbox);
+                sent.increment();
+            } catch (SendFailedException e) {
+                // the recipient was rejected, the connection is still usable
+                failedMails.put(outbox, e);
+            } catch (MessagingException e) {
+                // the connection is broken, so the other emails would fail as well,
+                // the email is not counted as an attempt and is sent again with the rest in the next run
+                LOG.log(Level.WARNING, "Failed to send the emails, the connection is broken", e);
+                mail.close();
+                unsentMails = batch.subList(i, batch.size());
+                count = 0;
+                break;
+            }
+        }
+        complete(sentMails, failedMails, unsentMails);
+        return count;
+    }
+
+    private List<MailOutbox> claimBatch() {
+        EntityManager em = EntityManagerHelper.getInstance();
+        em.getTransaction().begin();
+        Date now = new Date();
+        List<MailOutbox> batch = em.createNamedQuery("MailOutbox.get-due", MailOutbox.class)
+                .setParameter("now", now)
+                .setMaxResults(BATCH_SIZE)
+                .getResultList();
+        Date claimedUntil = new Date(now.getTime() + TimeUnit.SECONDS.toMillis(CLAIM_SECONDS));
+        for (MailOutbox outbox : batch) {
+            outbox.setNextAttempt(claimedUntil);
+        }
+        em.getTransaction().commit();
+        em.clear();
+        return batch;
+    }
+
+    /**
+     * Deletes the sent emails, schedules the failed ones for a retry and releases the claim of the unsent ones.
+     */
+    private void complete(List<MailOutbox> sentMails, Map<MailOutbox, SendFailedException> failedMails,
+                          List<MailOutbox> unsentMails) {
+        EntityManager em = EntityManagerHelper.getInstance();
+        em.getTransaction().begin();
+        if (!sentMails.isEmpty()) {
+            em.createQuery("DELETE FROM MailOutbox m WHERE m.id IN :ids")
+                    .setParameter("ids", idsOf(sentMails))
+                    .executeUpdate();
+        }
+        failedMails.forEach((outbox, e) -> {
+            MailOutbox managed = em.find(MailOutbox.class, outbox.getId());
+            if (managed != null) {
+                retryLater(em, managed, e);
+            }
+        });
+        if (!unsentMails.isEmpty()) {
+            em.createQuery("UPDATE MailOutbox m SET m.nextAttempt = :now WHERE m.id IN :ids")
+                    .setParameter("now", new Date(), TemporalType.TIMESTAMP)
+                    .setParameter("ids", idsOf(unsentMails))
+                    .executeUpdate();
+        }
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    private static List<Long> idsOf(List<MailOutbox> mails) {
+        return mails.stream().map(MailOutbox::getId).collect(Collectors.toList());
+    }
+
+    private void retryLater(EntityManager em, MailOutbox outbox, SendFailedException e) {
+        failed.increment();
+        int attempts = outbox.getAttempts() + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            LOG.log(Level.WARNING, "Dropped email " + outbox.getId() + " to " + outbox.getRecipient(), e);
+            em.remove(outbox);
+            dropped.increment();
+        } else {
+            long backoff = Math.min(INITIAL_BACKOFF_SECONDS << (attempts - 1), MAX_BACKOFF_SECONDS);
+            outbox.setAttempts(attempts);
+            outbox.setNextAttempt(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(backoff)));
+            outbox.setLastError(abbreviate(String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Returns the number of emails in the outbox at the end of the last run.
+     */
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private static String abbreviate(String message) {
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -0,0 +1,111 @@
+package repositories;
+
+import data.entities.Alcohol;
+import data.enums.AlcoholType;
+import helper.EntityManagerHelper;
+import helper.JsonHelper;
+import org.bouncycastle.util.encoders.Hex;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.core.EntityTag;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory copy of the global alcohol catalog (every alcohol without an user).
+ * The catalog only changes when the alcohols are loaded into the database, so it is read once
+ * and kept as an immutable snapshot per {@link AlcoholType} including the serialized response.
+ */
+public class AlcoholCatalog {
+
+    private static volatile Map<AlcoholType, Snapshot> snapshots;
+    private static Logger LOG = Logger.getLogger(AlcoholCatalog.class.getName());
+
+    /**
+     * Returns the snapshot of the catalog for this type and loads the catalog if this did not happen yet.
+     *
+     * @param type the alcohol type
+     * @return the snapshot of this type
+     */
+    public static Snapshot get(AlcoholType type) {
+        Map<AlcoholType, Snapshot> current = snapshots;
+        if (current == null) {
+            synchronized (AlcoholCatalog.class) {
+                current = snapshots;
+                if (current == null) {
+                    current = load();
+                    snapshots = current;
+                }
+            }
+        }
+        return current.get(type);
+    }
+
+    /**
+     * Reads the catalog from the database again and replaces every snapshot at once.
+     */
+    public static synchronized void reload() {
+        snapshots = load();
+    }
+
+    private static Map<AlcoholType, Snapshot> load() {
+        EntityManager em = EntityManagerHelper.getInstance();
+        Map<AlcoholType, Snapshot> loaded = new EnumMap<>(AlcoholType.class);
+        for (AlcoholType type : AlcoholType.values()) {
+            List<Alcohol> alcohols
+                    = em.createQuery(
+                    "SELECT a FROM Alcohol a " +
+                            "WHERE a.type = :type " +
+                            "AND a.user IS NULL", Alcohol.class)
+                    .setParameter("type", type)
+                    .getResultList();
+            loaded.put(type, new Snapshot(alcohols));
+        }
+        LOG.info("Loaded alcohol catalog");
+        return loaded;
+    }
+
+    /**
+     * The catalog of a single {@link AlcoholType}.
+     */
+    public static class Snapshot {
+        private final List<Alcohol> alcohols;
+        private final byte[] json;
+        private final EntityTag entityTag;
+
+        private Snapshot(List<Alcohol> alcohols) {
+            this.alcohols = Collections.unmodifiableList(new ArrayList<>(alcohols));
+            this.json = JsonHelper.toBytes(gen -> JsonHelper.writeArray(gen, this.alcohols, Alcohol::toJson));
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+                this.entityTag = new EntityTag(new String(Hex.encode(Arrays.copyOf(hash, 16))));
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public List<Alcohol> getAlcohols() {
+            return alcohols;
+        }
+
+        /**
+         * Returns the serialized json array of the alcohols. The array must not be modified.
+         *
+         * @return the utf-8 encoded json
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        public EntityTag getEntityTag() {
+            return entityTag;
+        }
+    }
+}
@@ -1,58 +1,87 @@
 package repositories;
 
+import data.dto.DrinkDTO;
 import data.entities.Alcohol;
+import data.entities.DailyConsumption;
 import data.entities.Drink;
+import data.entities.DrinkChange;
 import data.entities.User;
 import data.enums.AlcoholType;
 import helper.EntityManagerHelper;
-import helper.JwtHelper;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import helper.JsonHelper;
+import helper.UserPrincipal;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.TemporalType;
+import javax.persistence.TypedQuery;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
  * The repository for everything related to alcohols and drinks.
- * Note that every function that receives a jwt may throw a 401 UNAUTHORIZED Http Response
- * if the jwt is not longer valid.
+ * Note that every function that receives a principal may throw a 401 UNAUTHORIZED Http Response
+ * if the user does not exist anymore.
  */
 public class AlcoholRepository {
 
-    private EntityManager em = EntityManagerHelper.getInstance();
-    private JwtHelper jwtHelper = new JwtHelper();
+    /**
+     * The maximum number of drinks that are returned at once.
+     */
+    public static final int MAX_DRINKS_LIMIT = 500;
+
+    /**
+     * The number of the latest drink changes of an user that are kept, an older change token causes a reset.
+     */
+    private static final int RETAINED_CHANGES = 1000;
+
+    /**
+     * The older drink changes of an user are pruned whenever the sequence number is a multiple of this.
+     */
+    private static final int PRUNE_INTERVAL = 100;
+
     private static Logger LOG = Logger.getLogger(AlcoholRepository.class.getName());
 
     /**
      * Adds a drink to an user.
      *
-     * @param jwt       the json web token
+     * @param principal the authenticated user
      * @param alcoholId the id of the {@link Alcohol}
      * @param drankDate the date the drink was drank
      * @param longitude the longitude of the position
      * @param latitude  the latitude of the position
      * @return a response containing OK or NOT_FOUND
      */
-    public Response addDrink(String jwt, long alcoholId, Date drankDate, BigDecimal longitude, BigDecimal latitude) {
-        User user = getUserFromJwt(jwt);
-        Alcohol alcohol = em.find(Alcohol.class, alcoholId);
+    public Response addDrink(UserPrincipal principal, long alcoholId, Date drankDate, BigDecimal longitude, BigDecimal latitude) {
+        User user = findUser(principal);
+        Alcohol alcohol = em().find(Alcohol.class, alcoholId);
         if (alcohol != null) {
             Drink drink = new Drink(user, alcohol, drankDate, longitude, latitude);
-            em.getTransaction().begin();
-            em.persist(drink);
-            em.getTransaction().commit();
+            em().getTransaction().begin();
+            lockChanges(user);
+            em().persist(drink);
+            em().flush();
+            appendChange(user, drink.getId(), false);
+            updateConsumption(user, Collections.singletonList(drink), 1);
+            em().getTransaction().commit();
+            BloodAlcoholEngine.drinkAdded(user, drink);
 
             LOG.info("Added drink to user: " + user.getId() + ", " + user.getUsername());
             return Response.ok().build();
@@ -61,37 +90,262 @@ public class AlcoholRepository {
     }
 
     /**
-     * Returns all drinks the user drank.
+     * Adds several drinks to an user in a single transaction, e.g. the drinks a client recorded while offline.
+     * The result of every drink is returned in the order of the given drinks.
      *
-     * @param jwt the json web token
-     * @return a response containing either OK (with the drinks) or UNAUTHORIZED
+     * @param principal the authenticated user
+     * @param drinks    the drinks to add (at most {@value #MAX_DRINKS_LIMIT})
+     * @return a response containing either OK (with the result per drink) or FORBIDDEN
      */
-    public Response getDrinks(String jwt) {
-        User user = getUserFromJwt(jwt);
-        em.refresh(user);
-        JSONArray jsonArray = new JSONArray();
-        for (Drink drink : user.getDrinks()) {
-            jsonArray.put(drink.toJson());
+    public Response addDrinks(UserPrincipal principal, List<DrinkDTO> drinks) {
+        if (drinks == null || drinks.size() > MAX_DRINKS_LIMIT) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        User user = findUser(principal);
+
+        // resolve every referenced alcohol at once
+        Map<Long, Alcohol> alcohols = new HashMap<>();
+        Set<Long> alcoholIds = drinks.stream()
+                .filter(Objects::nonNull)
+                .map(DrinkDTO::getAlcoholId)
+                .collect(Collectors.toSet());
+        if (!alcoholIds.isEmpty()) {
+            em().createQuery("SELECT a FROM Alcohol a WHERE a.id IN :ids", Alcohol.class)
+                    .setParameter("ids", alcoholIds)
+                    .getResultList()
+                    .forEach(alcohol -> alcohols.put(alcohol.getId(), alcohol));
+        }
+
+        Drink[] added = new Drink[drinks.size()];
+        List<Drink> addedDrinks = new ArrayList<>();
+        for (int i = 0; i < drinks.size(); i++) {
+            DrinkDTO dto = drinks.get(i);
+            Alcohol alcohol = dto != null ? alcohols.get(dto.getAlcoholId()) : null;
+            if (alcohol != null && dto.getDrankDate() != null) {
+                added[i] = new Drink(user, alcohol, dto.getDrankDate(), dto.getLongitude(), dto.getLatitude());
+                addedDrinks.add(added[i]);
+            }
+        }
+        int addedCount = addedDrinks.size();
+        if (addedCount > 0) {
+            em().getTransaction().begin();
+            lockChanges(user);
+            for (Drink drink : addedDrinks) {
+                em().persist(drink);
+            }
+            // the inserts are sent as one jdbc batch
+            em().flush();
+            for (Drink drink : addedDrinks) {
+                appendChange(user, drink.getId(), false);
+            }
+            updateConsumption(user, addedDrinks, 1);
+            em().getTransaction().commit();
+        }
+        for (Drink drink : addedDrinks) {
+            BloodAlcoholEngine.drinkAdded(user, drink);
+        }
+
+        LOG.info("Added " + addedCount + " drinks to user: " + user.getId() + ", " + user.getUsername());
+        return Response.ok(JsonHelper.streamArray(Arrays.asList(added), (drink, gen) -> {
+            gen.writeStartObject();
+            if (drink != null) {
+                gen.writeNumberField("status", Response.Status.OK.getStatusCode());
+                gen.writeNumberField("id", drink.getId());
+            } else {
+                gen.writeNumberField("status", Response.Status.NOT_FOUND.getStatusCode());
+            }
+            gen.writeEndObject();
+        })).build();
+    }
+
+    /**
+     * Returns one page of the drinks the user drank, the newest drink first.
+     * The pages are addressed with a cursor on (drankDate, id), the cursor of the next page is returned
+     * in the X-Next-Cursor header and is missing on the last page.
+     *
+     * @param principal the authenticated user
+     * @param limit     the maximum number of drinks of the page (1 to {@value #MAX_DRINKS_LIMIT})
+     * @param cursor    the cursor of the page or null for the first page
+     * @param from      the earliest drank date in milliseconds (inclusive) or null
+     * @param to        the latest drank date in milliseconds (exclusive) or null
+     * @return a response containing either OK (with the drinks) or FORBIDDEN
+     */
+    public Response getDrinks(UserPrincipal principal, int limit, String cursor, Long from, Long to) {
+        if (limit < 1 || limit > MAX_DRINKS_LIMIT) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        long[] position = null;
+        if (cursor != null) {
+            position = decodeCursor(cursor);
+            if (position == null) {
+                return Response.status(Response.Status.FORBIDDEN).build();
+            }
+        }
+        User user = findUser(principal);
+
+        StringBuilder jpql = new StringBuilder("SELECT d FROM Drink d JOIN FETCH d.alcohol WHERE d.user = :user");
+        if (from != null) {
+            jpql.append(" AND d.drankDate >= :from");
+        }
+        if (to != null) {
+            jpql.append(" AND d.drankDate < :to");
+        }
+        if (position != null) {
+            jpql.append(" AND (d.drankDate < :cursorDate OR (d.drankDate = :cursorDate AND d.id < :cursorId))");
+        }
+        jpql.append(" ORDER BY d.drankDate DESC, d.id DESC");
+
+        TypedQuery<Drink> query = em().createQuery(jpql.toString(), Drink.class)
+                .setParameter("user", user)
+                .setMaxResults(limit + 1);
+        if (from != null) {
+            query.setParameter("from", new Date(from), TemporalType.TIMESTAMP);
+        }
+        if (to != null) {
+            query.setParameter("to", new Date(to), TemporalType.TIMESTAMP);
+        }
+        if (position != null) {
+            query.setParameter("cursorDate", new Date(position[0]), TemporalType.TIMESTAMP);
+            query.setParameter("cursorId", position[1]);
+        }
+        // one drink more than requested is loaded to know if there is a next page
+        List<Drink> drinks = query.getResultList();
+        boolean hasNext = drinks.size() > limit;
+        if (hasNext) {
+            drinks = drinks.subList(0, limit);
+        }
+
+        Response.ResponseBuilder response = Response.ok(JsonHelper.streamArray(drinks, Drink::toJson));
+        if (hasNext) {
+            response.header("X-Next-Cursor", encodeCursor(drinks.get(drinks.size() - 1)));
         }
         LOG.info("Returned drinks of user: " + user.getId() + ", " + user.getUsername());
-        return Response.ok(jsonArray.toString()).build();
+        return response.build();
     }
 
+    /**
+     * Returns the drinks that were added or removed since the change token was issued.
+     * Only the last {@value #RETAINED_CHANGES} changes are kept, so a token that is missing, invalid or older than
+     * that causes a reset: "reset" is true and the client has to replace its drinks with the returned ones.
+     * A reset returns the first page of {@link #getDrinks}, the cursor of the next page is returned in the
+     * X-Next-Cursor header and the other pages are read with getDrinks, before the returned token is used.
+     *
+     * @param principal the authenticated user
+     * @param token     the change token of the last synchronization or null
+     * @return a response containing OK (with the added drinks, the ids of the removed drinks and the new token)
+     */
+    public Response syncDrinks(UserPrincipal principal, String token) {
+        User user = findUser(principal);
+        long current = user.getDrinkChangeSequence();
+        Long since = token != null ? decodeChangeToken(token) : null;
+
+        List<Drink> added = Collections.emptyList();
+        List<Long> removed = new ArrayList<>();
+        String nextCursor = null;
+        boolean reset = since == null || since > current || since < current - RETAINED_CHANGES;
+        if (reset) {
+            // one drink more than a page is loaded to know if there is a next page
+            added = em().createQuery("SELECT d FROM Drink d JOIN FETCH d.alcohol WHERE d.user = :user " +
+                    "ORDER BY d.drankDate DESC, d.id DESC", Drink.class)
+                    .setParameter("user", user)
+                    .setMaxResults(MAX_DRINKS_LIMIT + 1)
+                    .getResultList();
+            if (added.size() > MAX_DRINKS_LIMIT) {
+                added = added.subList(0, MAX_DRINKS_LIMIT);
+                nextCursor = encodeCursor(added.get(added.size() - 1));
+            }
+        } else if (since < current) {
+            // only the latest change of a drink matters
+            Map<Long, Boolean> changes = new LinkedHashMap<>();
+            for (DrinkChange change : em().createNamedQuery("DrinkChange.get-since", DrinkChange.class)
+                    .setParameter("user", user)
+                    .setParameter("sequence", since)
+                    .getResultList()) {
+                changes.remove(change.getDrinkId());
+                changes.put(change.getDrinkId(), change.isRemoved());
+            }
+            List<Long> addedIds = new ArrayList<>();
+            changes.forEach((drinkId, isRemoved) -> {
+                if (isRemoved) {
+                    removed.add(drinkId);
+                } else {
+                    addedIds.add(drinkId);
+                }
+            });
+            if (!addedIds.isEmpty()) {
+                added = em().createQuery(
+                        "SELECT d FROM Drink d JOIN FETCH d.alcohol WHERE d.id IN :ids", Drink.class)
+                        .setParameter("ids", addedIds)
+                        .getResultList();
+            }
+        }
+
+        List<Drink> addedDrinks = added;
+        String newToken = encodeChangeToken(current);
+        LOG.info("Synchronized drinks of user: " + user.getId() + ", " + user.getUsername());
+        Response.ResponseBuilder response = Response.ok(JsonHelper.stream(gen -> {
+            gen.writeStartObject();
+            gen.writeBooleanField("reset", reset);
+            gen.writeFieldName("added");
+            JsonHelper.writeArray(gen, addedDrinks, Drink::toJson);
+            gen.writeFieldName("removed");
+            JsonHelper.writeArray(gen, removed, (drinkId, g) -> g.writeNumber(drinkId));
+            gen.writeStringField("token", newToken);
+            gen.writeEndObject();
+        }));
+        if (nextCursor != null) {
+            response.header("X-Next-Cursor", nextCursor);
+        }
+        return response.build();
+    }
+
+    /**
+     * Returns the estimated blood alcohol concentration of the user.
+     *
+     * @param principal the authenticated user
+     * @return a response containing either OK (with the current and the peak per mille of the current
+     * drinking session and the date when the user is sober again) or CONFLICT if the details are not set
+     */
+    public Response getBloodAlcohol(UserPrincipal principal) {
+        User user = findUser(principal);
+        if (!BloodAlcoholEngine.isSupported(user)) {
+            return Response.status(Response.Status.CONFLICT).build();
+        }
+        double current = BloodAlcoholEngine.getCurrent(user);
+        double peak = BloodAlcoholEngine.getSessionPeak(user);
+        long soberDate = BloodAlcoholEngine.getSoberDate(user).getTime();
+        return Response.ok(JsonHelper.stream(gen -> {
+            gen.writeStartObject();
+            gen.writeNumberField("perMille", current);
+            gen.writeNumberField("peak", peak);
+            gen.writeNumberField("soberDate", soberDate);
+            gen.writeEndObject();
+        })).build();
+    }
 
     /**
      * Removes a drink of an user.
      *
-     * @param jwt     the json web token
-     * @param drinkId the drink id
+     * @param principal the authenticated user
+     * @param drinkId   the drink id
      * @return a response containing either an OK or NOT_FOUND
      */
-    public Response removeDrink(String jwt, long drinkId) {
-        User user = getUserFromJwt(jwt);
-        Drink drink = em.find(Drink.class, drinkId);
-        if (drink != null) {
-            em.getTransaction().begin();
+    public Response removeDrink(UserPrincipal principal, long drinkId) {
+        User user = findUser(principal);
+        Drink drink = em().find(Drink.class, drinkId);
+        if (drink != null && drink.getUser() == user) {
+            em().getTransaction().begin();
+            lockChanges(user);
+            // a concurrent request might have removed the drink before the user was locked
+            if (!user.getDrinks().contains(drink)) {
+                em().getTransaction().rollback();
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            appendChange(user, drinkId, true);
+            updateConsumption(user, Collections.singletonList(drink), -1);
             user.getDrinks().remove(drink);
-            em.getTransaction().commit();
+            em().getTransaction().commit();
+            BloodAlcoholEngine.invalidate(user);
             LOG.info("Removed drink from user: " + user.getId() + ", " + user.getUsername());
             return Response.ok().build();
         }
@@ -100,30 +354,25 @@ public class AlcoholRepository {
 
     /**
      * Returns all alcohols of this type.
+     * The alcohols are served from the {@link AlcoholCatalog}, so no database access is needed.
      *
      * @param typeStr the alcohol type
-     * @return a response containing either an OK (with the alcohols) or NOT_FOUND
+     * @param request the request used to evaluate the If-None-Match header
+     * @return a response containing either an OK (with the alcohols), NOT_MODIFIED or NOT_FOUND
      */
-    public Response getAlcohols(String typeStr) {
+    public Response getAlcohols(String typeStr, Request request) {
         typeStr = typeStr.toUpperCase();
         if (validateAlcoholType(typeStr)) {
             AlcoholType type = AlcoholType.valueOf(typeStr);
+            AlcoholCatalog.Snapshot snapshot = AlcoholCatalog.get(type);
 
-            List<Alcohol> alcohols
-                    = em.createQuery(
-                    "SELECT a FROM Alcohol a " +
-                            "WHERE a.type = :type " +
-                            "AND a.user IS NULL", Alcohol.class)
-                    .setParameter("type", type)
-                    .getResultList();
-
-            JSONArray jsonArray = new JSONArray();
-            for (Alcohol alcohol : alcohols) {
-                jsonArray.put(alcohol.toJson());
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(snapshot.getEntityTag());
+            if (notModified != null) {
+                return notModified.build();
             }
 
             LOG.info("Returned alcohols of type: " + typeStr);
-            return Response.ok(jsonArray.toString()).build();
+            return Response.ok(snapshot.getJson()).tag(snapshot.getEntityTag()).build();
         }
         return Response.status(Response.Status.NOT_FOUND).build();
     }
@@ -131,25 +380,21 @@ public class AlcoholRepository {
     /**
      * Returns the favourite alcohols of an user of this type.
      *
-     * @param jwt     the json web token
-     * @param typeStr the alcohol type
+     * @param principal the authenticated user
+     * @param typeStr   the alcohol type
      * @return a response containing either an OK (with the favorite alcohols) or NOT_FOUND
      */
-    public Response getFavouritesOfType(String jwt, String typeStr) {
+    public Response getFavouritesOfType(UserPrincipal principal, String typeStr) {
         if (validateAlcoholType(typeStr)) {
-            User user = getUserFromJwt(jwt);
+            User user = findUser(principal);
             AlcoholType type = AlcoholType.valueOf(typeStr);
             List<Alcohol> favouritesOfType = user.getFavouriteAlcohols()
                     .stream()
                     .filter(alcohol -> alcohol.getType() == type)
                     .collect(Collectors.toList());
-            JSONArray jsonArray = new JSONArray();
-            for (Alcohol alcohol : favouritesOfType) {
-                jsonArray.put(alcohol.toJson());
-            }
             LOG.info("Returned favourite alcohols of type " + typeStr
                     + " for user: " + user.getId() + ", " + user.getUsername());
-            return Response.ok(jsonArray.toString()).build();
+            return Response.ok(JsonHelper.streamArray(favouritesOfType, Alcohol::toJson)).build();
         }
         return Response.status(Response.Status.NOT_FOUND).build();
     }
@@ -157,17 +402,17 @@ public class AlcoholRepository {
     /**
      * Adds a new favourite alcohol of an user.
      *
-     * @param jwt       the json web token
+     * @param principal the authenticated user
      * @param alcoholId the alcohol id
      * @return a response containing either an OK or NOT_FOUND
      */
-    public Response addFavourite(String jwt, long alcoholId) {
-        User user = getUserFromJwt(jwt);
-        Alcohol alcohol = em.find(Alcohol.class, alcoholId);
+    public Response addFavourite(UserPrincipal principal, long alcoholId) {
+        User user = findUser(principal);
+        Alcohol alcohol = em().find(Alcohol.class, alcoholId);
         if (alcohol != null) {
-            em.getTransaction().begin();
+            em().getTransaction().begin();
             user.getFavouriteAlcohols().add(alcohol);
-            em.getTransaction().commit();
+            em().getTransaction().commit();
             LOG.info("Added favourite alcohol to user: " + user.getId() + ", " + user.getUsername());
             return Response.ok().build();
         }
@@ -177,17 +422,17 @@ public class AlcoholRepository {
     /**
      * Removes a favourite alcohol of an user.
      *
-     * @param jwt       the json web token
+     * @param principal the authenticated user
      * @param alcoholId the alcohol id
      * @return a response containing either an OK or NOT_FOUND
      */
-    public Response removeFavourite(String jwt, long alcoholId) {
-        User user = getUserFromJwt(jwt);
-        Alcohol alcohol = em.find(Alcohol.class, alcoholId);
+    public Response removeFavourite(UserPrincipal principal, long alcoholId) {
+        User user = findUser(principal);
+        Alcohol alcohol = em().find(Alcohol.class, alcoholId);
         if (alcohol != null) {
-            em.getTransaction().begin();
+            em().getTransaction().begin();
             user.getFavouriteAlcohols().remove(alcohol);
-            em.getTransaction().commit();
+            em().getTransaction().commit();
             LOG.info("Removed favourite alcohol of user: " + user.getId() + ", " + user.getUsername());
             return Response.ok().build();
         }
@@ -197,18 +442,18 @@ public class AlcoholRepository {
     /**
      * Returns the personal alcohols of an user of this type.
      *
-     * @param jwt     the json web token
-     * @param typeStr the alcohol type
+     * @param principal the authenticated user
+     * @param typeStr   the alcohol type
      * @return a response containing either an OK (with the personal alcohols) or NOT_FOUND
      */
-    public Response getPersonalAlcoholsOfType(String jwt, String typeStr) {
+    public Response getPersonalAlcoholsOfType(UserPrincipal principal, String typeStr) {
         typeStr = typeStr.toUpperCase();
         if (validateAlcoholType(typeStr)) {
             AlcoholType type = AlcoholType.valueOf(typeStr);
-            User user = getUserFromJwt(jwt);
+            User user = findUser(principal);
 
             List<Alcohol> personalAlcohols
-                    = em.createQuery(
+                    = em().createQuery(
                     "SELECT a FROM Alcohol a WHERE a.user = :user" +
                             " AND a.type = :type" +
                             " AND a.isArchived = false", Alcohol.class)
@@ -216,14 +461,9 @@ public class AlcoholRepository {
                     .setParameter("type", type)
                     .getResultList();
 
-            JSONArray jsonArray = new JSONArray();
-            for (Alcohol alcohol : personalAlcohols) {
-                jsonArray.put(alcohol.toJson());
-            }
-
             LOG.info("Returned personal alcohols of type " + typeStr
                     + " for user: " + user.getId() + ", " + user.getUsername());
-            return Response.ok(jsonArray.toString()).build();
+            return Response.ok(JsonHelper.streamArray(personalAlcohols, Alcohol::toJson)).build();
         }
         return Response.status(Response.Status.NOT_FOUND).build();
     }
@@ -231,7 +471,7 @@ public class AlcoholRepository {
     /**
      * Adds a new personal alcohol.
      *
-     * @param jwt        the json web token
+     * @param principal  the authenticated user
      * @param type       the alcohol type
      * @param name       the alcohol name
      * @param category   the alcohol category
@@ -239,9 +479,9 @@ public class AlcoholRepository {
      * @param amount     the amount of the alcohol
      * @return a response containing either an OK (with the new personal alcohols) or FORBIDDEN
      */
-    public Response addPersonalAlcohol(String jwt, AlcoholType type, String name, String category, float percentage, int amount) {
+    public Response addPersonalAlcohol(UserPrincipal principal, AlcoholType type, String name, String category, float percentage, int amount) {
         if (name != null && percentage >= 0 && percentage <= 100 && amount >= 1 && amount <= 2000) {
-            User user = getUserFromJwt(jwt);
+            User user = findUser(principal);
 
             Alcohol personalAlcohol = new Alcohol(type, name, percentage, amount);
             personalAlcohol.setUser(user);
@@ -249,12 +489,12 @@ public class AlcoholRepository {
                 personalAlcohol.setCategory(category.toLowerCase());
             }
 
-            em.getTransaction().begin();
-            em.persist(personalAlcohol);
-            em.getTransaction().commit();
+            em().getTransaction().begin();
+            em().persist(personalAlcohol);
+            em().getTransaction().commit();
 
             LOG.info("Add personal alcohol to user: " + user.getId() + ", " + user.getUsername());
-            return Response.ok(personalAlcohol.toJson().toString()).build();
+            return Response.ok(JsonHelper.stream(personalAlcohol::toJson)).build();
         }
         return Response.status(Response.Status.FORBIDDEN).build();
     }
@@ -264,20 +504,20 @@ public class AlcoholRepository {
      * The alcohol will not be completely removed because a drink might already been drank with it.
      * The alcohol will be also be removed from favourites if it is one.
      *
-     * @param jwt       the json web token
+     * @param principal the authenticated user
      * @param alcoholId the alcohol id
      * @return a response containing either an OK, FORBIDDEN or NOT_FOUND
      */
-    public Response removePersonalAlcohol(String jwt, long alcoholId) {
-        User user = getUserFromJwt(jwt);
-        Alcohol alcohol = em.find(Alcohol.class, alcoholId);
+    public Response removePersonalAlcohol(UserPrincipal principal, long alcoholId) {
+        User user = findUser(principal);
+        Alcohol alcohol = em().find(Alcohol.class, alcoholId);
         if (alcohol != null) {
             if (alcohol.getUser() == user) {
-                em.getTransaction().begin();
+                em().getTransaction().begin();
                 alcohol.setArchived(true);
-                em.getTransaction().commit();
+                em().getTransaction().commit();
                 LOG.info("Removed personal alcohol of user: " + user.getId() + ", " + user.getUsername());
-                removeFavourite(jwt, alcoholId);
+                removeFavourite(principal, alcoholId);
                 return Response.ok().build();
             } else {
                 return Response.status(Response.Status.FORBIDDEN).build();
@@ -287,57 +527,148 @@ public class AlcoholRepository {
     }
 
     /**
-     * Loads all alcohol from the json files into the database.
+     * The repository is shared by every request, so the entity manager of the current request is used.
      */
-    public void loadAlcohol() {
-        Map<AlcoholType, String> alcohols = new HashMap<>();
-        alcohols.put(AlcoholType.BEER, "beers.json");
-        alcohols.put(AlcoholType.WINE, "wine.json");
-        alcohols.put(AlcoholType.LIQUOR, "liquor.json");
-        alcohols.put(AlcoholType.COCKTAIL, "cocktails.json");
-
-        alcohols.forEach((type, file) -> {
-            URL url = Thread.currentThread()
-                    .getContextClassLoader()
-                    .getResource("alcohol/" + file);
-
-            if (url != null) {
-                try (InputStream inputStream = url.openStream()) {
-                    // InputStream inputStream = Files.newInputStream(Paths.get(folder + file));
-                    JSONArray jsonArray = new JSONArray(new JSONTokener(inputStream));
-                    for (int i = 0; i < jsonArray.length(); ++i) {
-                        JSONObject json = jsonArray.getJSONObject(i);
-                        Alcohol alcohol = new Alcohol(
-                                type,
-                                json.getString("name"),
-                                json.getFloat("percentage"),
-                                json.getInt("amount")
-                        );
-                        if (json.has("category")) {
-                            alcohol.setCategory(json.getString("category"));
-                        }
-                        em.getTransaction().begin();
-                        em.persist(alcohol);
-                        em.getTransaction().commit();
-                    }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            } else {
-                throw new RuntimeException("Template file " + file + " not found");
-            }
-        });
+    private EntityManager em() {
+        return EntityManagerHelper.getInstance();
     }
 
-    private User getUserFromJwt(String jwt) {
-        long id = jwtHelper.getUserId(jwt);
-        User user = em.find(User.class, id);
+    private User findUser(UserPrincipal principal) {
+        User user = em().find(User.class, principal.getId());
         if (user == null) {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
         return user;
     }
 
+    /**
+     * Locks the user until the end of the transaction, so concurrent changes can not get the same sequence number.
+     * Has to be called before a drink of the user is inserted: the foreign key check of the insert takes a shared
+     * lock on the user, and two transactions that both hold it deadlock when they upgrade it to this lock.
+     */
+    private void lockChanges(User user) {
+        em().refresh(user, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Records an added or removed drink with the next change sequence number of the user.
+     * Has to be called inside of a transaction after the user was locked.
+     */
+    private void appendChange(User user, long drinkId, boolean removed) {
+        long sequence = user.getDrinkChangeSequence() + 1;
+        user.setDrinkChangeSequence(sequence);
+        em().persist(new DrinkChange(user, sequence, drinkId, removed));
+        if (sequence % PRUNE_INTERVAL == 0) {
+            // the changes before the oldest accepted token are not needed anymore
+            em().createNamedQuery("DrinkChange.delete-until")
+                    .setParameter("user", user)
+                    .setParameter("sequence", sequence - RETAINED_CHANGES)
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * Adds the drinks to or subtracts them from the {@link DailyConsumption} of their days.
+     * Has to be called inside of a transaction after the user was locked.
+     *
+     * @param sign 1 to add the drinks, -1 to subtract them
+     */
+    private void updateConsumption(User user, Collection<Drink> drinks, int sign) {
+        Map<Date, DailyConsumption> consumptions = new HashMap<>();
+        for (Drink drink : drinks) {
+            consumptions.put(DailyConsumption.dayOf(drink.getDrankDate()), null);
+        }
+        em().createQuery("SELECT c FROM DailyConsumption c WHERE c.user = :user AND c.day IN :days",
+                DailyConsumption.class)
+                .setParameter("user", user)
+                .setParameter("days", new ArrayList<>(consumptions.keySet()))
+                .getResultList()
+                .forEach(consumption -> consumptions.put(DailyConsumption.dayOf(consumption.getDay()), consumption));
+
+        for (Drink drink : drinks) {
+            Date day = DailyConsumption.dayOf(drink.getDrankDate());
+            DailyConsumption consumption = consumptions.get(day);
+            if (consumption == null) {
+                consumption = new DailyConsumption(user, day);
+                em().persist(consumption);
+                consumptions.put(day, consumption);
+            }
+            consumption.add(drink.getAlcohol(), sign);
+        }
+        for (DailyConsumption consumption : consumptions.values()) {
+            if (consumption != null && consumption.getDrinkCount() <= 0) {
+                em().remove(consumption);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the {@link DailyConsumption} of every user from the drinks, e.g. to fill the table for the first time.
+     * Every user is rebuilt in an own transaction while the user is locked, so it is safe while requests are served.
+     */
+    public void rebuildDailyConsumption() {
+        List<Long> userIds = em().createQuery("SELECT u.id FROM User u ORDER BY u.id", Long.class).getResultList();
+        for (Long userId : userIds) {
+            em().getTransaction().begin();
+            User user = em().find(User.class, userId);
+            if (user != null) {
+                // a drink can't be added or removed until the rows of the user are rebuilt
+                lockChanges(user);
+                em().createQuery("DELETE FROM DailyConsumption c WHERE c.user = :user")
+                        .setParameter("user", user)
+                        .executeUpdate();
+                List<Drink> drinks = em().createQuery(
+                        "SELECT d FROM Drink d JOIN FETCH d.alcohol WHERE d.user = :user", Drink.class)
+                        .setParameter("user", user)
+                        .getResultList();
+                if (!drinks.isEmpty()) {
+                    updateConsumption(user, drinks, 1);
+                }
+            }
+            em().getTransaction().commit();
+            // keep the persistence context small
+            em().clear();
+        }
+        LOG.info("Rebuilt daily consumption of " + userIds.size() + " users");
+    }
+
+    private String encodeChangeToken(long sequence) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(sequence).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Long decodeChangeToken(String token) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String encodeCursor(Drink drink) {
+        String position = drink.getDrankDate().getTime() + ":" + drink.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor created by {@link #encodeCursor(Drink)}.
+     *
+     * @param cursor the cursor
+     * @return the drank date in milliseconds and the drink id or null if the cursor is invalid
+     */
+    private long[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            return new long[]{
+                    Long.parseLong(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1))
+            };
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
     private boolean validateAlcoholType(String typeStr) {
         return typeStr.equals("BEER") || typeStr.equals("WINE") || typeStr.equals("LIQUOR") || typeStr.equals("COCKTAIL");
     }
@@ -0,0 +1,281 @@
+package repositories;
+
+import data.entities.Drink;
+import data.entities.User;
+import helper.EntityManagerHelper;
+import helper.EpochDays;
+import helper.LruCache;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the blood alcohol concentration (in per mille) of the users with the Widmark formula,
+ * using the total body water of Watson et al. instead of a fixed Widmark factor.
+ * Every drink is assumed to be absorbed instantly and the alcohol is eliminated at a constant rate.
+ * <p>
+ * The state of an user is kept in memory and updated incrementally when a drink is added,
+ * so the current and the peak concentration can be read without looking at the drink history.
+ * The state is rebuilt from the drinks of the last {@value #WINDOW_DAYS} days when it is read for the
+ * first time, after a drink was removed or when a drink is added before the latest drink.
+ * The states of about {@value #MAX_STATES} recently used users are kept, the rebuild and the updates of
+ * a state are serialized per user, so a drink that is added during a rebuild is not lost.
+ */
+public class BloodAlcoholEngine {
+
+    /**
+     * The eliminated per mille per hour.
+     */
+    public static final double ELIMINATION_PER_HOUR = 0.15;
+
+    /**
+     * The grams of water per millilitre of blood, divided by the density of blood.
+     */
+    private static final double BLOOD_WATER_RATIO = 0.8 / 1.055;
+
+    /**
+     * The number of days of drinks that are used to rebuild the state, a day more than a challenge lasts.
+     */
+    private static final int WINDOW_DAYS = 8;
+
+    /**
+     * The maximum number of users whose state is kept.
+     */
+    private static final int MAX_STATES = 10000;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final LruCache<Long, Holder> states = new LruCache<>(MAX_STATES);
+
+    /**
+     * Returns true if the concentration of the user can be estimated, which requires the details of the user.
+     *
+     * @param user the user
+     * @return true if the details needed for the estimation are set
+     */
+    public static boolean isSupported(User user) {
+        return user.isDetailsSet() && user.getWeight() > 0 && user.getHeight() > 0 && user.getBirthday() != null;
+    }
+
+    /**
+     * Adds a drink to the state of the user, has to be called after the drink was committed.
+     *
+     * @param user  the user of the drink
+     * @param drink the new drink
+     */
+    public static void drinkAdded(User user, Drink drink) {
+        Holder holder = states.get(user.getId());
+        if (holder == null) {
+            return;
+        }
+        // waits for a running rebuild, which might have seen the drink already
+        synchronized (holder) {
+            if (holder.state != null && !holder.state.add(drink.getId(), drink.getDrankDate().getTime(),
+                    drink.getAlcohol().calculateGrams())) {
+                // the drink is older than the latest drink, so the state has to be rebuilt
+                holder.state = null;
+            }
+        }
+    }
+
+    /**
+     * Discards the state of the user, e.g. because a drink was removed or the details of the user changed.
+     *
+     * @param user the user
+     */
+    public static void invalidate(User user) {
+        states.remove(user.getId());
+    }
+
+    /**
+     * Returns the current concentration of the user.
+     *
+     * @param user the user, the details of the user have to be set
+     * @return the concentration in per mille
+     */
+    public static double getCurrent(User user) {
+        return getState(user).levelAt(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the highest concentration of the current drinking session, i.e. since the concentration was 0.
+     *
+     * @param user the user, the details of the user have to be set
+     * @return the concentration in per mille
+     */
+    public static double getSessionPeak(User user) {
+        State state = getState(user);
+        return state.levelAt(System.currentTimeMillis()) > 0 ? state.getSessionPeak() : 0;
+    }
+
+    /**
+     * Returns the date when the concentration of the user is 0 again.
+     *
+     * @param user the user, the details of the user have to be set
+     * @return the date, which might be in the past
+     */
+    public static Date getSoberDate(User user) {
+        return new Date(getState(user).soberAt());
+    }
+
+    /**
+     * Returns the highest concentration the user had on the day of the date or later.
+     * Only the last {@value #WINDOW_DAYS} days are known.
+     *
+     * @param user  the user, the details of the user have to be set
+     * @param since the start of the period
+     * @return the concentration in per mille
+     */
+    public static double getPeakSince(User user, Date since) {
+        return getState(user).peakSince(toEpochDay(since.getTime()));
+    }
+
+    private static State getState(User user) {
+        // the holder is added before the drinks are read, so a drink committed in between is added to it
+        Holder holder = states.computeIfAbsent(user.getId(), id -> new Holder());
+        synchronized (holder) {
+            if (holder.state == null) {
+                holder.state = rebuild(user);
+            }
+            return holder.state;
+        }
+    }
+
+    private static State rebuild(User user) {
+        Date start = Date.from(Instant.now().minus(WINDOW_DAYS, ChronoUnit.DAYS));
+        List<Drink> drinks = EntityManagerHelper.getInstance()
+                .createQuery("SELECT d FROM Drink d JOIN FETCH d.alcohol " +
+                        "WHERE d.user = :user AND d.drankDate >= :start ORDER BY d.drankDate", Drink.class)
+                .setParameter("user", user)
+                .setParameter("start", start)
+                .getResultList();
+        State state = new State(perMillePerGram(user));
+        for (Drink drink : drinks) {
+            state.add(drink.getId(), drink.getDrankDate().getTime(), drink.getAlcohol().calculateGrams());
+        }
+        return state;
+    }
+
+    /**
+     * Returns the per mille one gram of alcohol causes, based on the total body water of Watson et al.
+     */
+    private static double perMillePerGram(User user) {
+        double weight = user.getWeight();
+        double height = user.getHeight();
+        double age = ChronoUnit.YEARS.between(
+                Instant.ofEpochMilli(user.getBirthday().getTime()).atZone(ZONE).toLocalDate(), LocalDate.now(ZONE));
+        double bodyWater;
+        if ("F".equals(user.getGender())) {
+            bodyWater = -2.097 + 0.1069 * height + 0.2466 * weight;
+        } else {
+            bodyWater = 2.447 - 0.09516 * age + 0.1074 * height + 0.3362 * weight;
+        }
+        return BLOOD_WATER_RATIO / bodyWater;
+    }
+
+    private static long toEpochDay(long millis) {
+        return EpochDays.toEpochDay(millis, ZONE);
+    }
+
+    /**
+     * Holds the state of a single user, which is null until it is rebuilt.
+     * The holder is the lock of the rebuild and the updates of the state.
+     */
+    private static class Holder {
+        private State state;
+    }
+
+    /**
+     * The elimination state of a single user.
+     */
+    private static class State {
+        private static final double ELIMINATION_PER_MILLI = ELIMINATION_PER_HOUR / TimeUnit.HOURS.toMillis(1);
+
+        private final double perMillePerGram;
+        private long time = Long.MIN_VALUE;
+        private double level;
+        private double sessionPeak;
+
+        // the peak of each of the last days, indexed by the epoch day modulo the window
+        private final long[] days = new long[WINDOW_DAYS];
+        private final double[] dailyPeaks = new double[WINDOW_DAYS];
+
+        // the time of the added drinks by their id, in the order they were added
+        private final Map<Long, Long> drinks = new LinkedHashMap<>();
+
+        private State(double perMillePerGram) {
+            this.perMillePerGram = perMillePerGram;
+        }
+
+        /**
+         * Adds a drink, a drink that was added already is ignored.
+         *
+         * @return false if the drink is older than the latest drink and could not be added
+         */
+        private synchronized boolean add(long id, long drankAt, double grams) {
+            if (drinks.containsKey(id)) {
+                return true;
+            }
+            if (drankAt < time) {
+                return false;
+            }
+            drinks.put(id, drankAt);
+            long windowStart = drankAt - TimeUnit.DAYS.toMillis(WINDOW_DAYS);
+            Iterator<Long> iterator = drinks.values().iterator();
+            while (iterator.hasNext() && iterator.next() < windowStart) {
+                iterator.remove();
+            }
+            double remaining = levelAt(drankAt);
+            if (remaining == 0) {
+                sessionPeak = 0;
+            }
+            level = remaining + grams * perMillePerGram;
+            time = drankAt;
+            sessionPeak = Math.max(sessionPeak, level);
+
+            long day = toEpochDay(drankAt);
+            int index = (int) Math.floorMod(day, (long) WINDOW_DAYS);
+            if (days[index] != day) {
+                days[index] = day;
+                dailyPeaks[index] = 0;
+            }
+            dailyPeaks[index] = Math.max(dailyPeaks[index], level);
+            return true;
+        }
+
+        private synchronized double levelAt(long at) {
+            if (time == Long.MIN_VALUE) {
+                return 0;
+            }
+            return Math.max(0, level - Math.max(0, at - time) * ELIMINATION_PER_MILLI);
+        }
+
+        private synchronized double getSessionPeak() {
+            return sessionPeak;
+        }
+
+        private synchronized long soberAt() {
+            if (time == Long.MIN_VALUE) {
+                return System.currentTimeMillis();
+            }
+            return time + (long) (level / ELIMINATION_PER_MILLI);
+        }
+
+        private synchronized double peakSince(long sinceDay) {
+            double peak = 0;
+            for (int i = 0; i < WINDOW_DAYS; i++) {
+                if (days[i] >= sinceDay && dailyPeaks[i] > peak) {
+                    peak = dailyPeaks[i];
+                }
+            }
+            return peak;
+        }
+    }
+}
@@ -1,163 +1,123 @@
 package repositories;
 
+import challenges.ChallengeEvaluators;
+import challenges.WeeklySnapshot;
 import data.entities.Challenge;
 import data.entities.ChallengeTemplate;
-import data.entities.Drink;
+import data.entities.DailyConsumption;
 import data.entities.User;
 import data.enums.ChallengeType;
 import helper.EntityManagerHelper;
-import helper.JwtHelper;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import helper.JsonHelper;
+import helper.UserPrincipal;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class ChallengeRepository {
 
-    private EntityManager em = EntityManagerHelper.getInstance();
-    private JwtHelper jwtHelper = new JwtHelper();
 
     /**
-     * Loads every template from the json file into the database
+     * <b>Returns the challenges of the user</b>
+     * The challenges are checked and renewed by the {@link scheduler.ChallengeScheduler},
+     * only the first challenges of an user are generated here. The user is locked while the challenges are
+     * generated, so concurrent requests don't generate them twice.
+     *
+     * @param principal the authenticated user
+     * @return a response containing OK (with the challenges)
      */
-    public void loadTemplates() {
-        URL url = Thread.currentThread()
-                .getContextClassLoader()
-                .getResource("challenges/challenges.json");
-        if (url != null) {
-            try (InputStream inputStream = url.openStream()) {
-                JSONArray jsonArray = new JSONArray(new JSONTokener(inputStream));
-
-                jsonArray.forEach(item -> {
-                    //Parse Object to JSONObject
-                    JSONObject jsonObject = (JSONObject) item;
-
-                    //Generate ChallengeTemplate from JSONObject
-                    ChallengeTemplate template = new ChallengeTemplate(
-                            jsonObject.getLong("id"),
-                            jsonObject.getString("content"),
-                            jsonObject.getInt("amount"),
-                            jsonObject.getEnum(ChallengeType.class, "type")
-                    );
-
-                    em.getTransaction().begin();
-                    em.persist(template);
-                    em.getTransaction().commit();
-                });
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+    public Response challengeManager(UserPrincipal principal) {
+        User user = findUser(principal);
+        //Generate Challenges
+        if (user.getChallenges().isEmpty()) {
+            em().getTransaction().begin();
+            // another request might have generated the challenges since the user was found
+            em().refresh(user, LockModeType.PESSIMISTIC_WRITE);
+            if (user.getChallenges().isEmpty()) {
+                generateChallenges(user, getSnapshot(user, getDueDate()));
             }
-        } else {
-            throw new RuntimeException("Challenge templates not found");
+            em().getTransaction().commit();
         }
+        return Response.ok(JsonHelper.streamArray(user.getChallenges(), Challenge::toJson)).build();
     }
 
     /**
-     * <b>Manage all user challenges</b>
-     * when the challenges are fulfilled then generate new challenges
-     * else send the saved challenges
+     * Returns the ids of the users whose challenges are due, i.e. older than 7 days, in ascending order.
      *
-     * @param jwt the json web token
-     * @return challenges
+     * @return the user ids
      */
-    public String challengeManager(final String jwt) {
-        System.out.println("Manager reached");
-        User user = getUserFromJwt(jwt);
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DAY_OF_MONTH, -7);
-        // checks if user is null and breaks
-        //Generate Challenges
-        if (user.getChallenges().size() == 0) {
-            generateChallenges(user);
-            em.getTransaction().begin();
-            em.merge(user);
-            em.getTransaction().commit();
-        }
-        // checks if challenges are due and if so check if they are fulfilled
-        System.out.println(user.getChallenges().get(0).getDate());
-        System.out.println(cal.getTime());
-        if (user.getChallenges().get(0).getDate().before(cal.getTime())) {
-            System.out.println("Check challenges");
-            checkChallenges(user, cal.getTime());
-        }
-        JSONArray challenges = new JSONArray();
-        for (Challenge challenge : user.getChallenges()) {
-            challenges.put(challenge.toJson());
-        }
-        return challenges.toString();
+    public List<Long> getUsersWithDueChallenges() {
+        return em().createQuery("SELECT DISTINCT u.id FROM User u JOIN u.challenges c WHERE c.date < :due " +
+                "ORDER BY u.id", Long.class)
+                .setParameter("due", getDueDate())
+                .getResultList();
     }
 
     /**
-     * generate 3 challenges based on the users drinking history
+     * Checks the due challenges of the users and generates new ones, all in a single transaction.
+     * Every user is locked until the end of the transaction, in the order of the ids.
      *
-     * @param user user object of current user
+     * @param userIds the ids of the users in ascending order
+     * @return the number of users whose challenges were due
      */
-    private void generateChallenges(User user) {
-        // get 1 challenge at a time
-        for (int i = 0; i < 3; i++) {
-            ChallengeTemplate template;
-            boolean repeat;
-            do {
-                repeat = false;
-                int rand = new Random().nextInt(5) + 1; //Start with 1 ends with 5
-                if (rand == 4) rand = 5;// Challenge 4 not implemented yet TODO: remove
-                template = em.createNamedQuery("Template.getRandomTemplate", ChallengeTemplate.class)
-                        .setParameter("id", rand).getSingleResult();
-                for (Challenge challenge : user.getChallenges()) {
-                    if (challenge.getTemplate().getId() == rand) {
-                        repeat = true;
-                    }
-                }
-            } while (repeat);
-            user.getChallenges().add(setParameter(template, user));
+    public int checkDueChallenges(List<Long> userIds) {
+        Date due = getDueDate();
+        int checked = 0;
+        em().getTransaction().begin();
+        for (Long userId : userIds) {
+            User user = em().find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+            // the challenges might have been checked since the user was found
+            if (user != null && !user.getChallenges().isEmpty()
+                    && user.getChallenges().get(0).getDate().before(due)) {
+                checkChallenges(user, due);
+                checked++;
+            }
         }
+        em().getTransaction().commit();
+        // keep the persistence context small
+        em().clear();
+        return checked;
     }
 
     /**
-     * receive custom parameters for a challenge
+     * generate 3 challenges based on the users drinking history
+     * has to be called inside of a transaction
      *
-     * @param t template of the challenge to set parameters
-     * @param u user object to generate personalised challenges
-     * @return a new Challenge
+     * @param user     user object of current user
+     * @param snapshot the drinks of the user in the last week
      */
-    private Challenge setParameter(ChallengeTemplate t, User u) {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DAY_OF_MONTH, -7);
-        List<Drink> drinks = em.createNamedQuery("Drink.get-drinks-in-between-time", Drink.class)
-                .setParameter("id", u.getId())
-                .setParameter("start", cal.getTime())
-                .getResultList(); // drinks that the user drank in a week
-        Challenge challenge = new Challenge();
-        challenge.setTemplate(t);
-        switch (t.getType()) {
-            case MAXWEEK:// check if user drank no more than x drinks in a week
-                challenge.getParameter().add(drinks.size() - 2 <= 0 ? 1 : drinks.size() - 2);
-                break;
-            case MAXDAY:// check if user drank more than x drinks per day
-                challenge.getParameter().add(drinks.size() / 7 - 2 <= 0 ? 1 : drinks.size() / 7 - 2);
-                break;
-            case MAXDAYS:// check if a user drank on y days x drinks
-                challenge.getParameter().add(drinks.size() / 7 - 2 <= 0 ? 1 : drinks.size() / 7 - 2);
-                challenge.getParameter().add(new Random().nextInt(5) + 1);// random amount of days between 1 and 5 days
-                break;
-            case MAXPERCENTAGE:// check if a user haven't had more than x ‰ (per mille)
-                break;
-            case MAXGAG:// always true
-                // Doesn't require any Parameter
-                break;
+    private void generateChallenges(User user, WeeklySnapshot snapshot) {
+        Set<Long> current = new HashSet<>();
+        for (Challenge challenge : user.getChallenges()) {
+            current.add(challenge.getTemplate().getId());
+        }
+        Map<ChallengeType, Boolean> available = new EnumMap<>(ChallengeType.class);
+        for (ChallengeType type : ChallengeType.values()) {
+            available.put(type, ChallengeEvaluators.get(type).isAvailable(user));
+        }
+        List<ChallengeTemplate> templates = ChallengeTemplateRegistry.pick(3, template ->
+                        !current.contains(template.getId()) && available.get(template.getType()),
+                ThreadLocalRandom.current());
+        for (ChallengeTemplate cached : templates) {
+            // the cached template is detached, the challenge has to reference a managed one
+            ChallengeTemplate template = em().getReference(ChallengeTemplate.class, cached.getId());
+            Challenge challenge = new Challenge();
+            challenge.setTemplate(template);
+            challenge.getParameter().addAll(ChallengeEvaluators.get(template.getType())
+                    .createParameters(snapshot, ThreadLocalRandom.current()));
+            em().persist(challenge);
+            user.getChallenges().add(challenge);
         }
-        return challenge;
     }
 
     /**
@@ -167,94 +127,51 @@ public class ChallengeRepository {
      * @param d    current date
      */
     private void checkChallenges(User user, Date d) {
-        user.getChallenges().forEach(challenge -> {
-            ChallengeTemplate template = challenge.getTemplate();
-            Integer maxAllowed;
-            List<Drink> drinks;
-            boolean failed = false;
-            Calendar cal = Calendar.getInstance();
-            switch (template.getType()) {
-                case MAXWEEK: // check if user drank no more than x drinks in a week
-                    maxAllowed = challenge.getParameter().get(0);
-                    drinks = em.createNamedQuery("Drink.get-drinks-in-between-time", Drink.class)
-                            .setParameter("start", d)
-                            .setParameter("id", user.getId())
-                            .getResultList();
-                    if (drinks.size() < maxAllowed) {
-                        //TODO: implement first check
-                        user.setPoints(user.getPoints() + challenge.getTemplate().getAmount());
-                        challenge.setSuccess(true);
-                    } else {
-                        challenge.setSuccess(false);
-                    }
-                    break;
-                case MAXDAY: // check if user drank more than x drinks per day
-                    maxAllowed = challenge.getParameter().get(0);
-                    drinks = em.createNamedQuery("Drink.get-drinks-in-between-time", Drink.class)
-                            .setParameter("start", d)
-                            .setParameter("id", user.getId())
-                            .getResultList();
-                    cal.setTime(d);
-
-                    for (int i = 0; i < 7; i++) {
-                        Stream<Drink> drinksOfOneDay = drinks.stream().filter(
-                                drink -> drink.getDrankDate().equals(cal.getTime())
-                        );
-                        if (drinksOfOneDay.count() > maxAllowed) {
-                            failed = true;
-                        }
-                        cal.add(Calendar.DAY_OF_MONTH, i);
-                    }
-                    if (!failed) {
-                        user.setPoints(user.getPoints() + challenge.getTemplate().getAmount());
-                        challenge.setSuccess(true);
-                    } else {
-                        challenge.setSuccess(false);
-                    }
-                    break;
-                case MAXDAYS:// check if a user drank on y days x drinks
-                    int days = challenge.getParameter().get(0);
-                    maxAllowed = challenge.getParameter().get(1);
-                    int failedCount = 0;
+        WeeklySnapshot snapshot = getSnapshot(user, d);
+        for (Challenge challenge : user.getChallenges()) {
+            boolean success = ChallengeEvaluators.get(challenge.getTemplate().getType())
+                    .isSuccess(challenge, snapshot);
+            if (success) {
+                user.setPoints(user.getPoints() + challenge.getTemplate().getAmount());
+            }
+            challenge.setSuccess(success);
+        }
+        user.getChallenges().clear();
+        // the challenges are checked and generated on the same week
+        generateChallenges(user, snapshot);
+    }
 
-                    drinks = em.createNamedQuery("Drink.get-drinks-in-between-time", Drink.class)
-                            .setParameter("start", d)
-                            .setParameter("id", user.getId())
-                            .getResultList();
+    /**
+     * Returns the drinks of the user from the day of the date until now with a single query.
+     *
+     * @param user  the user
+     * @param start the start of the period
+     * @return the snapshot of the drinks
+     */
+    private WeeklySnapshot getSnapshot(User user, Date start) {
+        List<DailyConsumption> consumptions
+                = em().createNamedQuery("DailyConsumption.get-since", DailyConsumption.class)
+                .setParameter("user", user)
+                .setParameter("start", DailyConsumption.dayOf(start))
+                .getResultList();
+        return new WeeklySnapshot(user, start, new Date(), consumptions);
+    }
 
-                    Calendar cal1 = Calendar.getInstance();
-                    cal1.setTime(d);
+    private Date getDueDate() {
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.DAY_OF_MONTH, -7);
+        return cal.getTime();
+    }
 
-                    for (int i = 0; i < 7; i++) {
-                        Stream<Drink> drinksOfOneDay = drinks.stream().filter(
-                                drink -> drink.getDrankDate().equals(cal1.getTime())
-                        );
-                        if (drinksOfOneDay.count() < maxAllowed) {
-                            failedCount++;
-                        }
-                        cal1.add(Calendar.DAY_OF_MONTH, i);
-                    }
-                    if (failedCount < days) {
-                        user.setPoints(user.getPoints() + challenge.getTemplate().getAmount());
-                        challenge.setSuccess(true);
-                    } else {
-                        challenge.setSuccess(false);
-                    }
-                    break;
-                case MAXPERCENTAGE:// check if a user haven't had more than x ‰ (per mille)
-                    break;
-                case MAXGAG:// always true
-                    challenge.setSuccess(true);
-                    break;
-            }
-        });
-        user.getChallenges().clear();
-        generateChallenges(user);
+    /**
+     * The repository is shared by every request, so the entity manager of the current request is used.
+     */
+    private EntityManager em() {
+        return EntityManagerHelper.getInstance();
     }
 
-    private User getUserFromJwt(final String jwt) {
-        long id = jwtHelper.getUserId(jwt);
-        User user = em.find(User.class, id);
+    private User findUser(UserPrincipal principal) {
+        User user = em().find(User.class, principal.getId());
         if (user == null) {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
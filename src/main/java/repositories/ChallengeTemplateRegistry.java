@@ -0,0 +1,122 @@
+package repositories;
+
+import data.entities.ChallengeTemplate;
+import data.enums.ChallengeType;
+import helper.EntityManagerHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory copy of every {@link ChallengeTemplate}, indexed by id and by {@link ChallengeType}.
+ * The templates only change when they are loaded into the database, which replaces the copy at once.
+ */
+public class ChallengeTemplateRegistry {
+
+    private static volatile Templates templates;
+    private static Logger LOG = Logger.getLogger(ChallengeTemplateRegistry.class.getName());
+
+    /**
+     * Returns the template with this id.
+     *
+     * @param id the id of the template
+     * @return the template or null if there is no such template
+     */
+    public static ChallengeTemplate get(long id) {
+        return getTemplates().byId.get(id);
+    }
+
+    /**
+     * Returns every template of this type.
+     *
+     * @param type the challenge type
+     * @return the templates, the list must not be modified
+     */
+    public static List<ChallengeTemplate> getByType(ChallengeType type) {
+        return getTemplates().byType.get(type);
+    }
+
+    /**
+     * Picks distinct random templates with a partial Fisher-Yates shuffle of the allowed templates.
+     *
+     * @param count   the number of templates to pick
+     * @param allowed the filter of the allowed templates
+     * @param random  the source of randomness
+     * @return the picked templates, less than count if there are not enough allowed templates
+     */
+    public static List<ChallengeTemplate> pick(int count, Predicate<ChallengeTemplate> allowed, Random random) {
+        ChallengeTemplate[] all = getTemplates().all;
+        ChallengeTemplate[] candidates = new ChallengeTemplate[all.length];
+        int size = 0;
+        for (ChallengeTemplate template : all) {
+            if (allowed.test(template)) {
+                candidates[size++] = template;
+            }
+        }
+        int picks = Math.min(count, size);
+        List<ChallengeTemplate> picked = new ArrayList<>(picks);
+        for (int i = 0; i < picks; i++) {
+            int j = i + random.nextInt(size - i);
+            ChallengeTemplate swap = candidates[i];
+            candidates[i] = candidates[j];
+            candidates[j] = swap;
+            picked.add(candidates[i]);
+        }
+        return picked;
+    }
+
+    /**
+     * Reads the templates from the database again.
+     */
+    public static synchronized void reload() {
+        templates = load();
+    }
+
+    private static Templates getTemplates() {
+        Templates current = templates;
+        if (current == null) {
+            synchronized (ChallengeTemplateRegistry.class) {
+                current = templates;
+                if (current == null) {
+                    current = load();
+                    templates = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Templates load() {
+        List<ChallengeTemplate> loaded = EntityManagerHelper.getInstance()
+                .createQuery("SELECT t FROM ChallengeTemplate t ORDER BY t.id", ChallengeTemplate.class)
+                .getResultList();
+        LOG.info("Loaded " + loaded.size() + " challenge templates");
+        return new Templates(loaded);
+    }
+
+    private static class Templates {
+        private final ChallengeTemplate[] all;
+        private final Map<Long, ChallengeTemplate> byId = new HashMap<>();
+        private final Map<ChallengeType, List<ChallengeTemplate>> byType = new EnumMap<>(ChallengeType.class);
+
+        private Templates(List<ChallengeTemplate> templates) {
+            this.all = templates.toArray(new ChallengeTemplate[0]);
+            Map<ChallengeType, List<ChallengeTemplate>> types = new EnumMap<>(ChallengeType.class);
+            for (ChallengeType type : ChallengeType.values()) {
+                types.put(type, new ArrayList<>());
+            }
+            for (ChallengeTemplate template : templates) {
+                byId.put(template.getId(), template);
+                types.get(template.getType()).add(template);
+            }
+            types.forEach((type, list) -> byType.put(type, Collections.unmodifiableList(list)));
+        }
+    }
+}
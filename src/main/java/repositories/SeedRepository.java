@@ -0,0 +1,225 @@
+package repositories;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import data.entities.Alcohol;
+import data.entities.ChallengeTemplate;
+import data.enums.AlcoholType;
+import data.enums.ChallengeType;
+import helper.EntityManagerHelper;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * The repository that imports the alcohol catalog and the challenge templates from the json files.
+ * The files are streamed and written in batches of {@value #BATCH_SIZE} rows per transaction.
+ * The import is idempotent, an alcohol is identified by its type, name and amount and a template by its id.
+ * Existing rows are updated instead of being inserted again.
+ */
+public class SeedRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private EntityManager em = EntityManagerHelper.getInstance();
+    private ObjectMapper mapper = new ObjectMapper();
+    private static Logger LOG = Logger.getLogger(SeedRepository.class.getName());
+
+    /**
+     * Imports every alcohol from the json files into the global catalog.
+     */
+    public void loadAlcohol() {
+        Map<AlcoholType, String> alcohols = new EnumMap<>(AlcoholType.class);
+        alcohols.put(AlcoholType.BEER, "beers.json");
+        alcohols.put(AlcoholType.WINE, "wine.json");
+        alcohols.put(AlcoholType.LIQUOR, "liquor.json");
+        alcohols.put(AlcoholType.COCKTAIL, "cocktails.json");
+
+        alcohols.forEach((type, file) -> loadAlcohol(type, "alcohol/" + file));
+        AlcoholCatalog.reload();
+    }
+
+    /**
+     * Imports every challenge template from the json file.
+     */
+    public void loadTemplates() {
+        long start = System.nanoTime();
+        Stats stats = new Stats();
+        List<JsonNode> batch = new ArrayList<>(BATCH_SIZE);
+        stream("challenges/challenges.json", json -> {
+            batch.add(json);
+            if (batch.size() == BATCH_SIZE) {
+                writeTemplates(batch, stats);
+                batch.clear();
+            }
+        });
+        writeTemplates(batch, stats);
+        ChallengeTemplateRegistry.reload();
+        report("challenge templates", stats, start);
+    }
+
+    private void loadAlcohol(AlcoholType type, String file) {
+        long start = System.nanoTime();
+        Stats stats = new Stats();
+
+        // the ids of the existing alcohols of this type by their natural key
+        Map<String, Long> ids = new HashMap<>();
+        em.createQuery("SELECT a.id, a.name, a.amount FROM Alcohol a " +
+                "WHERE a.type = :type AND a.user IS NULL", Object[].class)
+                .setParameter("type", type)
+                .getResultList()
+                .forEach(row -> ids.put(alcoholKey((String) row[1], (Integer) row[2]), (Long) row[0]));
+
+        List<JsonNode> batch = new ArrayList<>(BATCH_SIZE);
+        stream(file, json -> {
+            batch.add(json);
+            if (batch.size() == BATCH_SIZE) {
+                writeAlcohols(type, batch, ids, stats);
+                batch.clear();
+            }
+        });
+        writeAlcohols(type, batch, ids, stats);
+        report(type + " alcohols", stats, start);
+    }
+
+    private void writeAlcohols(AlcoholType type, List<JsonNode> batch, Map<String, Long> ids, Stats stats) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // load every existing alcohol of this batch at once
+        List<Long> existingIds = new ArrayList<>();
+        for (JsonNode json : batch) {
+            Long id = ids.get(alcoholKey(json.get("name").asText(), json.get("amount").asInt()));
+            if (id != null) {
+                existingIds.add(id);
+            }
+        }
+        Map<Long, Alcohol> managed = new HashMap<>();
+        if (!existingIds.isEmpty()) {
+            em.createQuery("SELECT a FROM Alcohol a WHERE a.id IN :ids", Alcohol.class)
+                    .setParameter("ids", existingIds)
+                    .getResultList()
+                    .forEach(alcohol -> managed.put(alcohol.getId(), alcohol));
+        }
+
+        em.getTransaction().begin();
+        for (JsonNode json : batch) {
+            String name = json.get("name").asText();
+            int amount = json.get("amount").asInt();
+            float percentage = (float) json.get("percentage").asDouble();
+            String category = json.has("category") ? json.get("category").asText() : null;
+
+            String key = alcoholKey(name, amount);
+            Long id = ids.get(key);
+            Alcohol alcohol = id != null ? managed.get(id) : null;
+            if (alcohol != null) {
+                alcohol.setPercentage(percentage);
+                alcohol.setCategory(category);
+                stats.updated++;
+            } else {
+                alcohol = new Alcohol(type, name, percentage, amount);
+                alcohol.setCategory(category);
+                em.persist(alcohol);
+                // the id is assigned by the table sequence when the alcohol is persisted
+                ids.put(key, alcohol.getId());
+                managed.put(alcohol.getId(), alcohol);
+                stats.inserted++;
+            }
+        }
+        em.getTransaction().commit();
+        // keep the persistence context small
+        em.clear();
+    }
+
+    private void writeTemplates(List<JsonNode> batch, Stats stats) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode json : batch) {
+            ids.add(json.get("id").asLong());
+        }
+        Map<Long, ChallengeTemplate> existing = new HashMap<>();
+        em.createQuery("SELECT t FROM ChallengeTemplate t WHERE t.id IN :ids", ChallengeTemplate.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(template -> existing.put(template.getId(), template));
+
+        em.getTransaction().begin();
+        for (JsonNode json : batch) {
+            long id = json.get("id").asLong();
+            String content = json.get("content").asText();
+            int amount = json.get("amount").asInt();
+            ChallengeType type = ChallengeType.valueOf(json.get("type").asText());
+
+            ChallengeTemplate template = existing.get(id);
+            if (template != null) {
+                template.setContent(content);
+                template.setAmount(amount);
+                template.setType(type);
+                stats.updated++;
+            } else {
+                template = new ChallengeTemplate(id, content, amount, type);
+                em.persist(template);
+                existing.put(id, template);
+                stats.inserted++;
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    /**
+     * Reads the json array of the resource one object at a time.
+     *
+     * @param resource the path of the resource
+     * @param consumer the consumer of every object of the array
+     */
+    private void stream(String resource, Consumer<JsonNode> consumer) {
+        URL url = Thread.currentThread()
+                .getContextClassLoader()
+                .getResource(resource);
+        if (url == null) {
+            throw new RuntimeException("Seed file " + resource + " not found");
+        }
+        try (InputStream inputStream = url.openStream();
+             JsonParser parser = mapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RuntimeException("Seed file " + resource + " does not contain an array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(mapper.readTree(parser));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void report(String name, Stats stats, long start) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long rows = stats.inserted + stats.updated;
+        LOG.info(String.format("Loaded %s: %d inserted, %d updated in %d ms (%d rows/s)",
+                name, stats.inserted, stats.updated, millis, millis > 0 ? rows * 1000 / millis : rows));
+    }
+
+    private static String alcoholKey(String name, int amount) {
+        return name + '\u0000' + amount;
+    }
+
+    private static class Stats {
+        private long inserted;
+        private long updated;
+    }
+}
@@ -0,0 +1,108 @@
+package repositories;
+
+import helper.BloomFilter;
+import helper.EntityManagerHelper;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Bloom filters of the usernames and the emails of every user, so checking if a username or an email
+ * is still available does not need a query in most cases. A positive answer of a filter only means
+ * that the value might be taken and has to be confirmed with a query.
+ * <p>
+ * The filters are published before they are filled, so a registration during the build is not lost.
+ * Until the build is complete every value might be taken.
+ */
+public class UserAvailability {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int MIN_CAPACITY = 10000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private static volatile Filters filters;
+    private static Logger LOG = Logger.getLogger(UserAvailability.class.getName());
+
+    /**
+     * Builds the filters by streaming the usernames and emails of the user table.
+     */
+    public static synchronized void build() {
+        long start = System.nanoTime();
+        EntityManager em = EntityManagerHelper.getInstance();
+        long count = em.createQuery("SELECT COUNT(u) FROM User u", Long.class).getSingleResult();
+        Filters building = new Filters(Math.max(MIN_CAPACITY, count * 2));
+        filters = building;
+
+        long lastId = -1;
+        List<Object[]> page;
+        do {
+            page = em.createQuery("SELECT u.id, u.username, u.email FROM User u " +
+                    "WHERE u.id > :lastId ORDER BY u.id", Object[].class)
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+            for (Object[] row : page) {
+                lastId = (Long) row[0];
+                building.add((String) row[1], (String) row[2]);
+            }
+        } while (page.size() == PAGE_SIZE);
+        building.complete = true;
+        LOG.info(String.format("Built the availability filters of %d users in %d ms",
+                count, (System.nanoTime() - start) / 1000000));
+    }
+
+    /**
+     * Adds the username and the email of a new user.
+     */
+    public static void add(String username, String email) {
+        Filters current = filters;
+        if (current != null) {
+            current.add(username, email);
+        }
+    }
+
+    /**
+     * Returns false if the username is certainly available.
+     */
+    public static boolean mightHaveUsername(String username) {
+        Filters current = filters;
+        return current == null || !current.complete || current.usernames.mightContain(normalize(username));
+    }
+
+    /**
+     * Returns false if the email is certainly available.
+     */
+    public static boolean mightHaveEmail(String email) {
+        Filters current = filters;
+        return current == null || !current.complete || current.emails.mightContain(normalize(email));
+    }
+
+    /**
+     * The database compares the values case insensitive, so the filters do as well.
+     */
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Filters {
+        private final BloomFilter usernames;
+        private final BloomFilter emails;
+        private volatile boolean complete;
+
+        private Filters(long capacity) {
+            this.usernames = new BloomFilter(capacity, FALSE_POSITIVE_PROBABILITY);
+            this.emails = new BloomFilter(capacity, FALSE_POSITIVE_PROBABILITY);
+        }
+
+        private void add(String username, String email) {
+            if (username != null) {
+                usernames.add(normalize(username));
+            }
+            if (email != null) {
+                emails.add(normalize(email));
+            }
+        }
+    }
+}
@@ -3,36 +3,37 @@ package repositories;
 import data.entities.User;
 import data.entities.VerificationToken;
 import helper.EntityManagerHelper;
+import helper.JsonHelper;
 import helper.JwtHelper;
+import helper.PasswordHasher;
+import helper.UserPrincipal;
+import helper.UserValidator;
 import mail.Mail;
-import org.bouncycastle.util.encoders.Hex;
-import org.json.JSONObject;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
  * The repository for everything related to users.
- * Note that every function that receives a jwt may throw a 401 UNAUTHORIZED Http Response
- * if the jwt is not longer valid.
+ * Note that every function that receives a principal may throw a 401 UNAUTHORIZED Http Response
+ * if the user does not exist anymore.
  */
 public class UserRepository {
 
-    private EntityManager em = EntityManagerHelper.getInstance();
-    private JwtHelper jwtHelper = new JwtHelper();
-    private Mail mail = new Mail();
-    private ExecutorService executor = Executors.newFixedThreadPool(10);
+    private final JwtHelper jwtHelper;
     private static Logger LOG = Logger.getLogger(UserRepository.class.getName());
 
+    public UserRepository(JwtHelper jwtHelper) {
+        this.jwtHelper = jwtHelper;
+    }
+
     /**
      * Registers a new user.
      *
@@ -42,39 +43,84 @@ public class UserRepository {
      * @return a response containing OK, CONFLICT or FORBIDDEN
      */
     public Response register(String username, String email, String password) {
-        if (validateUsername(username) && validateEmail(email) && validatePassword(password)) {
+        if (UserValidator.validateUsername(username) && UserValidator.validateEmail(email)
+                && UserValidator.validatePassword(password)) {
             // check if the username or email already exists
-            long countUsername = em.createQuery("SELECT COUNT(u) FROM User u WHERE u.username = :username", Long.class)
+            List<Long> existing = em().createQuery(
+                    "SELECT u.id FROM User u WHERE u.username = :username OR u.email = :email", Long.class)
                     .setParameter("username", username)
-                    .getSingleResult();
-            long countEmail = em.createQuery("SELECT COUNT(u) FROM User u WHERE u.email = :email", Long.class)
                     .setParameter("email", email)
-                    .getSingleResult();
-            if (countUsername == 0 && countEmail == 0) {
-                User user = new User(username, email, password);
-
-                // generate a token for the email verification
-                VerificationToken verificationToken = new VerificationToken(user, false);
-
-                em.getTransaction().begin();
-                em.persist(user);
-                em.persist(verificationToken);
-                em.getTransaction().commit();
+                    .setMaxResults(1)
+                    .getResultList();
+            if (!existing.isEmpty()) {
+                return Response.status(Response.Status.CONFLICT).build();
+            }
+            User user = new User(username, email, PasswordHasher.hash(password));
 
-                // async email sending
-                executor.execute(() -> mail.sendConfirmation(user, verificationToken));
+            // generate a token for the email verification
+            VerificationToken verificationToken = new VerificationToken(user, false);
 
-                LOG.info("Registered new user: " + user.getId() + ", " + user.getUsername());
-                return Response.ok().build();
-            } else {
-                return Response.status(Response.Status.CONFLICT).build();
+            try {
+                em().getTransaction().begin();
+                em().persist(user);
+                em().persist(verificationToken);
+                // the email is sent by the mail.MailDispatcher
+                em().persist(Mail.createConfirmation(user, verificationToken));
+                em().getTransaction().commit();
+            } catch (PersistenceException e) {
+                if (em().getTransaction().isActive()) {
+                    em().getTransaction().rollback();
+                }
+                // the unique constraints reject an user that was registered at the same time
+                if (isConstraintViolation(e)) {
+                    return Response.status(Response.Status.CONFLICT).build();
+                }
+                throw e;
             }
+            UserAvailability.add(username, email);
 
+            LOG.info("Registered new user: " + user.getId() + ", " + user.getUsername());
+            return Response.ok().build();
         } else {
             return Response.status(Response.Status.FORBIDDEN).build();
         }
     }
 
+    /**
+     * Checks if the username and the email are still available.
+     * Only the values that are not null are checked and returned.
+     *
+     * @param username the username or null
+     * @param email    the email or null
+     * @return a response containing OK (with the availability) or BAD_REQUEST
+     */
+    public Response checkAvailability(String username, String email) {
+        if (username == null && email == null) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        // a value is only looked up if the filter could not rule it out
+        boolean usernameAvailable = username != null && (!UserAvailability.mightHaveUsername(username)
+                || em().createQuery("SELECT u.id FROM User u WHERE u.username = :username", Long.class)
+                .setParameter("username", username)
+                .setMaxResults(1)
+                .getResultList().isEmpty());
+        boolean emailAvailable = email != null && (!UserAvailability.mightHaveEmail(email)
+                || em().createQuery("SELECT u.id FROM User u WHERE u.email = :email", Long.class)
+                .setParameter("email", email)
+                .setMaxResults(1)
+                .getResultList().isEmpty());
+        return Response.ok(JsonHelper.stream(gen -> {
+            gen.writeStartObject();
+            if (username != null) {
+                gen.writeBooleanField("username", usernameAvailable);
+            }
+            if (email != null) {
+                gen.writeBooleanField("email", emailAvailable);
+            }
+            gen.writeEndObject();
+        })).build();
+    }
+
     /**
      * Logs an user in.
      *
@@ -84,26 +130,28 @@ public class UserRepository {
      */
     public Response login(String username, String password) {
         // check if an user with this username exists
-        List<User> results = em.createNamedQuery("User.get-with-username", User.class)
+        List<User> results = em().createNamedQuery("User.get-with-username", User.class)
                 .setParameter("username", username)
                 .getResultList();
         if (results.size() != 0) {
             User user = results.get(0);
             // check if the password is correct
-            try {
-                MessageDigest md = MessageDigest.getInstance("SHA-256");
-                md.update(Hex.decode(user.getSalt()));
-                byte[] hash = md.digest(password.getBytes(StandardCharsets.UTF_8));
-
-                if (new String(Hex.encode(hash)).equals(user.getPassword())) {
-                    String jwt = jwtHelper.create(user.getId());
-                    JSONObject json = new JSONObject()
-                            .put("token", jwt);
-                    LOG.info("Logged in user: " + user.getId() + ", " + user.getUsername());
-                    return Response.ok(json.toString()).build();
+            if (PasswordHasher.verify(password, user.getPassword(), user.getSalt())) {
+                if (PasswordHasher.needsRehash(user.getPassword())) {
+                    // upgrade the hash to the current format and cost while the password is known
+                    String hash = PasswordHasher.hash(password);
+                    em().getTransaction().begin();
+                    user.setPassword(hash);
+                    user.setSalt(null);
+                    em().getTransaction().commit();
                 }
-            } catch (NoSuchAlgorithmException e) {
-                e.printStackTrace();
+                String jwt = jwtHelper.create(user.getId());
+                LOG.info("Logged in user: " + user.getId() + ", " + user.getUsername());
+                return Response.ok(JsonHelper.stream(gen -> {
+                    gen.writeStartObject();
+                    gen.writeStringField("token", jwt);
+                    gen.writeEndObject();
+                })).build();
             }
         }
         return Response.status(Response.Status.UNAUTHORIZED).build();
@@ -118,17 +166,17 @@ public class UserRepository {
     public boolean verify(String token) {
         // check if the token exists
         List<VerificationToken> tokens
-                = em.createQuery("SELECT v FROM VerificationToken v WHERE v.token = :token", VerificationToken.class)
+                = em().createQuery("SELECT v FROM VerificationToken v WHERE v.token = :token", VerificationToken.class)
                 .setParameter("token", token)
                 .getResultList();
         if (tokens.size() != 0) {
             // verify the user and delete the verification token
             VerificationToken verifyToken = tokens.get(0);
             User user = verifyToken.getUser();
-            em.getTransaction().begin();
+            em().getTransaction().begin();
             user.setEnabled(true);
-            em.remove(verifyToken);
-            em.getTransaction().commit();
+            em().remove(verifyToken);
+            em().getTransaction().commit();
 
             LOG.info("Verified user: " + user.getId() + ", " + user.getUsername());
             return true;
@@ -139,13 +187,13 @@ public class UserRepository {
     /**
      * Returns the user.
      *
-     * @param jwt the json web token
+     * @param principal the authenticated user
      * @return a response containing OK (with the user) or CONFLICT
      */
-    public Response getUser(String jwt) {
-        User user = getUserFromJwt(jwt);
+    public Response getUser(UserPrincipal principal) {
+        User user = findUser(principal);
         if (user.isDetailsSet()) {
-            return Response.ok(user.toJson().toString()).build();
+            return Response.ok(JsonHelper.stream(user::toJson)).build();
         }
         return Response.status(Response.Status.CONFLICT).build();
     }
@@ -154,7 +202,7 @@ public class UserRepository {
      * Sets the details of an user.
      * The firstName and the lastName are allowed to be null.
      *
-     * @param jwt       the json web token
+     * @param principal the authenticated user
      * @param firstName the first name of the user
      * @param lastName  the last name of the user
      * @param gender    the gender of the user
@@ -163,13 +211,13 @@ public class UserRepository {
      * @param weight    the weight of the user
      * @return a response containing OK (with the user) or FORBIDDEN
      */
-    public Response setDetails(String jwt, String firstName, String lastName,
+    public Response setDetails(UserPrincipal principal, String firstName, String lastName,
                                String gender, long birthday, int height, int weight) {
-        if ((firstName == null && lastName == null) || validateName(firstName, lastName)) {
-            if (validateHeightWeight(height, weight)) {
-                if (validateGender(gender)) {
-                    User user = getUserFromJwt(jwt);
-                    em.getTransaction().begin();
+        if ((firstName == null && lastName == null) || UserValidator.validateName(firstName, lastName)) {
+            if (UserValidator.validateHeightWeight(height, weight)) {
+                if (UserValidator.validateGender(gender)) {
+                    User user = findUser(principal);
+                    em().getTransaction().begin();
                     if (firstName != null) {
                         // if firstName is not null then lastName is also not null because of the previous if
                         user.setFirstName(firstName);
@@ -180,10 +228,11 @@ public class UserRepository {
                     user.setHeight(height);
                     user.setWeight(weight);
                     user.setDetailsSet(true);
-                    em.getTransaction().commit();
+                    em().getTransaction().commit();
+                    BloodAlcoholEngine.invalidate(user);
 
                     LOG.info("Set details of user: " + user.getId() + ", " + user.getUsername());
-                    return Response.ok(user.toJson().toString()).build();
+                    return Response.ok(JsonHelper.stream(user::toJson)).build();
                 }
             }
         }
@@ -197,7 +246,7 @@ public class UserRepository {
      * @return a response containing OK, NOT_FOUND or FORBIDDEN
      */
     public Response requestPasswordChange(String email) {
-        List<User> results = em.createNamedQuery("User.get-with-email", User.class)
+        List<User> results = em().createNamedQuery("User.get-with-email", User.class)
                 .setParameter("email", email)
                 .getResultList();
 
@@ -212,14 +261,13 @@ public class UserRepository {
 
         VerificationToken verificationToken = new VerificationToken(user, true);
 
-        em.getTransaction().begin();
-        em.persist(verificationToken);
-        em.getTransaction().commit();
-
         int pin = Integer.parseInt(verificationToken.getToken());
 
-        // async email sending
-        // executor.execute(() -> mail.resetPasswordConfirmation(user, pin));
+        em().getTransaction().begin();
+        em().persist(verificationToken);
+        // the email is sent by the mail.MailDispatcher
+        em().persist(Mail.createPasswordReset(user, pin));
+        em().getTransaction().commit();
 
         LOG.info("Requested password change of user: " + user.getId() + ", " + user.getUsername());
         return Response.ok().build();
@@ -234,7 +282,7 @@ public class UserRepository {
      */
     public Response changePassword(int pin, String password) {
         //check if the token exists
-        List<VerificationToken> results = em.createNamedQuery("Token.get-by-token", VerificationToken.class)
+        List<VerificationToken> results = em().createNamedQuery("Token.get-by-token", VerificationToken.class)
                 .setParameter("token", String.valueOf(pin))
                 .getResultList();
         if (results.size() == 0) {
@@ -247,79 +295,57 @@ public class UserRepository {
         Date currentDate = new Date();
         Date tokenDate = verificationToken.getExpiryDate();
         if (tokenDate.compareTo(currentDate) <= 0) {
-            em.getTransaction().begin();
-            em.remove(verificationToken);
-            em.getTransaction().commit();
+            em().getTransaction().begin();
+            em().remove(verificationToken);
+            em().getTransaction().commit();
             return Response.status(Response.Status.GONE).build();
         }
 
         // check if the new password is valid
-        if (!validatePassword(password)) {
+        if (!UserValidator.validatePassword(password)) {
             return Response.status(Response.Status.FORBIDDEN).build();
         }
 
         // set the new password
         User user = verificationToken.getUser();
-        em.getTransaction().begin();
-        user.setPassword(password);
-        em.getTransaction().commit();
+        String hash = PasswordHasher.hash(password);
+        em().getTransaction().begin();
+        user.setPassword(hash);
+        user.setSalt(null);
+        em().getTransaction().commit();
 
         LOG.info("Changed password of user: " + user.getId() + ", " + user.getUsername());
         return Response.ok().build();
     }
 
-    private User getUserFromJwt(String jwt) {
-        long id = jwtHelper.getUserId(jwt);
-        User user = em.find(User.class, id);
+    /**
+     * The repository is shared by every request, so the entity manager of the current request is used.
+     */
+    private EntityManager em() {
+        return EntityManagerHelper.getInstance();
+    }
+
+    private User findUser(UserPrincipal principal) {
+        User user = em().find(User.class, principal.getId());
         if (user == null) {
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
         return user;
     }
 
-    private boolean validateUsername(String username) {
-        if (username != null) {
-            return (username.length() >= 4 && username.length() <= 25);
-        }
-        return false;
-    }
-
-    private boolean validatePassword(String password) {
-        if (password != null) {
-            return (password.length() >= 8 && password.length() <= 25
-                    && password.matches("^.*(?=.{8,})(?=.*\\d)((?=.*[a-z]))((?=.*[A-Z])).*$"));
-        }
-        return false;
-    }
-
-    private boolean validateEmail(String email) {
-        if (email != null) {
-            return (email.length() >= 6 && email.length() <= 100
-                    && email.matches("^(([^<>()\\[\\]\\\\.,;:\\s@\"]+(\\.[^<>()\\[\\]\\\\.,;:\\s@\"]+)*)" +
-                    "|(\".+\"))@((\\[[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}])|(([a-zA-Z\\-0-9]+\\.)" +
-                    "+[a-zA-Z]{2,}))$"));
-        }
-        return false;
-    }
-
-    private boolean validateName(String firstName, String lastName) {
-        if (firstName != null && lastName != null) {
-            return firstName.length() <= 100 && lastName.length() <= 100;
-        }
-        return false;
-    }
-
-    private boolean validateGender(String gender) {
-        if (gender != null) {
-            gender = gender.toUpperCase();
-            return gender.equals("M") || gender.equals("F");
-        }
-        return false;
-    }
-
-    private boolean validateHeightWeight(double height, double weight) {
-        if (height >= 150.0 && height <= 230.0) {
-            return (weight >= 30 && weight <= 200);
+    /**
+     * Returns true if the exception was caused by a violated constraint, e.g. a duplicate unique key.
+     */
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+            // the SQLState class 23 is an integrity constraint violation
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("23")) {
+                return true;
+            }
         }
         return false;
     }
@@ -0,0 +1,175 @@
+package scheduler;
+
+import helper.EntityManagerHelper;
+import repositories.ChallengeRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the due challenges of every user in the background and generates new ones.
+ * The due users are split into batches of {@value #BATCH_SIZE} users, every batch is processed by a thread
+ * of the executor in a single transaction. At most {@value #MAX_BATCHES_IN_FLIGHT} batches are processed at the
+ * same time and a finished batch submits the next one, so the other background tasks of the shared executor,
+ * e.g. the mail dispatcher, are not queued behind every batch. The run does not wait for its batches,
+ * and a run is skipped while the batches of the last run are still processed.
+ */
+public class ChallengeScheduler {
+
+    private static final int BATCH_SIZE = 50;
+    private static final long PERIOD_MINUTES = 10;
+
+    /**
+     * The maximum number of batches of a run that are processed at the same time.
+     */
+    private static final int MAX_BATCHES_IN_FLIGHT = 2;
+
+    private static Logger LOG = Logger.getLogger(ChallengeScheduler.class.getName());
+
+    private final ChallengeRepository challengeRepo;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LongAdder checkedUsers = new LongAdder();
+    private volatile long lastRunMillis;
+    private volatile double lastRunUsersPerSecond;
+
+    /**
+     * @param challengeRepo the repository of the challenges
+     * @param executor      the executor that runs the scheduler and the batches
+     */
+    public ChallengeScheduler(ChallengeRepository challengeRepo, ScheduledExecutorService executor) {
+        this.challengeRepo = challengeRepo;
+        this.executor = executor;
+    }
+
+    public synchronized void start() {
+        task = executor.scheduleWithFixedDelay(this::run, 1, PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the scheduling, a run in progress is finished by the executor.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Checks the challenges of every due user once, the batches are processed after this method returned.
+     */
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            LOG.info("Skipped checking the challenges, the last run is still in progress");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<Long> userIds;
+            try {
+                userIds = challengeRepo.getUsersWithDueChallenges();
+            } finally {
+                EntityManagerHelper.close();
+            }
+
+            List<List<Long>> batches = new ArrayList<>();
+            for (int i = 0; i < userIds.size(); i += BATCH_SIZE) {
+                batches.add(userIds.subList(i, Math.min(i + BATCH_SIZE, userIds.size())));
+            }
+            if (batches.isEmpty()) {
+                completeRun(start, 0);
+                return;
+            }
+            Run run = new Run(start, batches);
+            for (int i = 0; i < Math.min(MAX_BATCHES_IN_FLIGHT, batches.size()); i++) {
+                run.submitNext();
+            }
+        } catch (RuntimeException e) {
+            running.set(false);
+            // an exception would cancel the scheduled task
+            LOG.log(Level.WARNING, "Failed to check the challenges", e);
+        }
+    }
+
+    /**
+     * Records the statistics of a run once all of its batches are processed.
+     */
+    private void completeRun(long start, int checked) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        checkedUsers.add(checked);
+        lastRunMillis = millis;
+        lastRunUsersPerSecond = millis > 0 ? checked * 1000.0 / millis : checked;
+        if (checked > 0) {
+            LOG.info(String.format("Checked challenges of %d users in %d ms (%.1f users/s)",
+                    checked, millis, lastRunUsersPerSecond));
+        }
+        running.set(false);
+    }
+
+    /**
+     * Returns the number of users whose challenges were checked since the start.
+     */
+    public long getCheckedUsers() {
+        return checkedUsers.sum();
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    public double getLastRunUsersPerSecond() {
+        return lastRunUsersPerSecond;
+    }
+
+    /**
+     * The batches of a single run.
+     */
+    private class Run {
+        private final long start;
+        private final List<List<Long>> batches;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final AtomicInteger checked = new AtomicInteger();
+
+        private Run(long start, List<List<Long>> batches) {
+            this.start = start;
+            this.batches = batches;
+            this.remaining = new AtomicInteger(batches.size());
+        }
+
+        /**
+         * Submits the next batch that was not submitted yet, if there is one.
+         */
+        private void submitNext() {
+            int index = next.getAndIncrement();
+            if (index < batches.size()) {
+                executor.execute(() -> checkBatch(batches.get(index)));
+            }
+        }
+
+        private void checkBatch(List<Long> batch) {
+            try {
+                checked.addAndGet(challengeRepo.checkDueChallenges(batch));
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Failed to check a batch of challenges", e);
+            } finally {
+                EntityManagerHelper.close();
+            }
+            if (remaining.decrementAndGet() == 0) {
+                completeRun(start, checked.get());
+            } else {
+                submitNext();
+            }
+        }
+    }
+}
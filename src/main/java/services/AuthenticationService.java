@@ -4,6 +4,7 @@ import data.dto.ChangePasswordDTO;
 import data.dto.UserDTO;
 import repositories.UserRepository;
 
+import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -13,7 +14,8 @@ import javax.ws.rs.ext.Provider;
 @Path("/auth")
 public class AuthenticationService {
 
-    private UserRepository userRepo = new UserRepository();
+    @Inject
+    private UserRepository userRepo;
 
     @Path("/register")
     @POST
@@ -23,6 +25,13 @@ public class AuthenticationService {
         return userRepo.register(user.getUsername(), user.getEmail(), user.getPassword());
     }
 
+    @Path("/available")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response available(@QueryParam("username") String username, @QueryParam("email") String email) {
+        return userRepo.checkAvailability(username, email);
+    }
+
     @Path("/login")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
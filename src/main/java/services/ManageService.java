@@ -3,38 +3,49 @@ package services;
 import data.dto.DetailsDTO;
 import data.dto.DrinkDTO;
 import data.dto.PersonalAlcoholDTO;
+import helper.UserPrincipal;
 import repositories.AlcoholRepository;
 import repositories.ChallengeRepository;
 import repositories.UserRepository;
 
+import javax.inject.Inject;
 import javax.ws.rs.*;
-import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.ext.Provider;
+import java.util.List;
 
 @Provider
 @Path("/manage")
 public class ManageService {
 
-    private UserRepository userRepo = new UserRepository();
-    private AlcoholRepository alcoholRepo = new AlcoholRepository();
-    private ChallengeRepository challengeRepo = new ChallengeRepository();
+    @Inject
+    private UserRepository userRepo;
+    @Inject
+    private AlcoholRepository alcoholRepo;
+    @Inject
+    private ChallengeRepository challengeRepo;
+
+    @Context
+    private SecurityContext securityContext;
 
     @Path("/user")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getUser(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth) {
-        return userRepo.getUser(getJwt(auth));
+    public Response getUser() {
+        return userRepo.getUser(getPrincipal());
     }
 
     @Path("/details")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response setDetails(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, DetailsDTO details) {
+    public Response setDetails(DetailsDTO details) {
         return userRepo.setDetails(
-                getJwt(auth),
+                getPrincipal(),
                 details.getFirstName(),
                 details.getLastName(),
                 details.getGender(),
@@ -47,23 +58,26 @@ public class ManageService {
     @Path("/alcohols/{type}")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAlcohols(@PathParam("type") String type) {
-        return alcoholRepo.getAlcohols(type);
+    public Response getAlcohols(@PathParam("type") String type, @Context Request request) {
+        return alcoholRepo.getAlcohols(type, request);
     }
 
     @Path("/drinks")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getDrinks(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth) {
-        return alcoholRepo.getDrinks(getJwt(auth));
+    public Response getDrinks(@QueryParam("limit") @DefaultValue("100") int limit,
+                              @QueryParam("cursor") String cursor,
+                              @QueryParam("from") Long from,
+                              @QueryParam("to") Long to) {
+        return alcoholRepo.getDrinks(getPrincipal(), limit, cursor, from, to);
     }
 
     @Path("/drinks")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response addDrink(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, DrinkDTO drinkDTO) {
+    public Response addDrink(DrinkDTO drinkDTO) {
         return alcoholRepo.addDrink(
-                getJwt(auth),
+                getPrincipal(),
                 drinkDTO.getAlcoholId(),
                 drinkDTO.getDrankDate(),
                 drinkDTO.getLongitude(),
@@ -71,45 +85,67 @@ public class ManageService {
         );
     }
 
+    @Path("/drinks/batch")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addDrinks(List<DrinkDTO> drinkDTOs) {
+        return alcoholRepo.addDrinks(getPrincipal(), drinkDTOs);
+    }
+
+    @Path("/drinks/sync")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response syncDrinks(@QueryParam("token") String token) {
+        return alcoholRepo.syncDrinks(getPrincipal(), token);
+    }
+
     @Path("/drinks/{id}")
     @DELETE
     @Consumes
-    public Response removeDrink(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, @PathParam("id") long drinkId) {
-        return alcoholRepo.removeDrink(getJwt(auth), drinkId);
+    public Response removeDrink(@PathParam("id") long drinkId) {
+        return alcoholRepo.removeDrink(getPrincipal(), drinkId);
+    }
+
+    @Path("/bac")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getBloodAlcohol() {
+        return alcoholRepo.getBloodAlcohol(getPrincipal());
     }
 
     @Path("/favourites/{type}")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getFavouritesOfType(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, @PathParam("type") String type) {
-        return alcoholRepo.getFavouritesOfType(getJwt(auth), type.toUpperCase());
+    public Response getFavouritesOfType(@PathParam("type") String type) {
+        return alcoholRepo.getFavouritesOfType(getPrincipal(), type.toUpperCase());
     }
 
     @Path("/favourites/{id}")
     @POST
-    public Response addFavourite(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, @PathParam("id") long alcoholId) {
-        return alcoholRepo.addFavourite(getJwt(auth), alcoholId);
+    public Response addFavourite(@PathParam("id") long alcoholId) {
+        return alcoholRepo.addFavourite(getPrincipal(), alcoholId);
     }
 
     @Path("/favourites/{id}")
     @DELETE
-    public Response removeFavourite(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, @PathParam("id") long alcoholId) {
-        return alcoholRepo.removeFavourite(getJwt(auth), alcoholId);
+    public Response removeFavourite(@PathParam("id") long alcoholId) {
+        return alcoholRepo.removeFavourite(getPrincipal(), alcoholId);
     }
 
     @Path("/personal-alcohols/{type}")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getPersonalAlcoholsOfType(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, @PathParam("type") String type) {
-        return alcoholRepo.getPersonalAlcoholsOfType(getJwt(auth), type);
+    public Response getPersonalAlcoholsOfType(@PathParam("type") String type) {
+        return alcoholRepo.getPersonalAlcoholsOfType(getPrincipal(), type);
     }
 
     @Path("/personal-alcohols")
     @POST
     @Produces(MediaType.APPLICATION_JSON)
-    public Response addPersonalAlcohol(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, PersonalAlcoholDTO alcoholDTO) {
+    public Response addPersonalAlcohol(PersonalAlcoholDTO alcoholDTO) {
         return alcoholRepo.addPersonalAlcohol(
-                getJwt(auth),
+                getPrincipal(),
                 alcoholDTO.getType(),
                 alcoholDTO.getName(),
                 alcoholDTO.getCategory(),
@@ -120,18 +156,19 @@ public class ManageService {
 
     @Path("/personal-alcohols/{id}")
     @DELETE
-    public Response removePersonalAlcohol(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth, @PathParam("id") long alcoholId) {
-        return alcoholRepo.removePersonalAlcohol(getJwt(auth), alcoholId);
+    public Response removePersonalAlcohol(@PathParam("id") long alcoholId) {
+        return alcoholRepo.removePersonalAlcohol(getPrincipal(), alcoholId);
     }
 
     @Path("/challenges")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public String manageChallenges(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth) {
-        return challengeRepo.challengeManager(getJwt(auth));
+    public Response manageChallenges() {
+        return challengeRepo.challengeManager(getPrincipal());
     }
 
-    private String getJwt(String auth) {
-        return auth.split("\\s")[1];
+    private UserPrincipal getPrincipal() {
+        // set by the JwtFilter
+        return (UserPrincipal) securityContext.getUserPrincipal();
     }
 }
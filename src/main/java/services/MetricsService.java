@@ -0,0 +1,47 @@
+package services;
+
+import helper.Config;
+import helper.PrometheusExporter;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Exports the metrics in the Prometheus text format.
+ * The endpoint is only enabled if "metrics_token" is set in the config file, a scrape has to send the token
+ * as {@code Authorization: Bearer <token>} (bearer_token in the Prometheus scrape config).
+ */
+@Provider
+@Path("/metrics")
+public class MetricsService {
+
+    private static final String BEARER = "Bearer ";
+    private static final String TOKEN = Config.get("metrics_token", "");
+
+    @Inject
+    private PrometheusExporter prometheusExporter;
+
+    @GET
+    @Produces(PrometheusExporter.CONTENT_TYPE)
+    public Response getMetrics(@HeaderParam(HttpHeaders.AUTHORIZATION) String authorization) {
+        if (TOKEN.isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (authorization == null || !authorization.startsWith(BEARER) || !MessageDigest.isEqual(
+                TOKEN.getBytes(StandardCharsets.UTF_8),
+                authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8))) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+                    .build();
+        }
+        return Response.ok(prometheusExporter.scrape()).build();
+    }
+}
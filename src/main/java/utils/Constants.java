@@ -3,5 +3,6 @@ package utils;
 public class Constants {
     public static final String BASE_URI = "http://0.0.0.0:8080/booze";
     public static final String EMAIL_URI = "http://localhost:8080/booze";
+    public static final String JDBC_URL = "jdbc:mysql://localhost:3306/boozedb";
     public static final String CONFIG_FILE = "properties/config.properties";
 }
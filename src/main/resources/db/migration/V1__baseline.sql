@@ -0,0 +1,115 @@
+-- The schema before the migrations were introduced, as it was generated by EclipseLink.
+-- An existing database is marked as this version instead of running it, see helper.SchemaMigration.
+
+CREATE TABLE Booze_VerificationToken (
+    ID         BIGINT NOT NULL,
+    EXPIRYDATE DATE,
+    TOKEN      VARCHAR(255),
+    PRIMARY KEY (ID)
+);
+
+CREATE TABLE Booze_User (
+    ID                   BIGINT NOT NULL,
+    BIRTHDAY             DATE,
+    DETAILSSET           TINYINT(1) DEFAULT 0,
+    EMAIL                VARCHAR(255) UNIQUE,
+    ENABLED              TINYINT(1) DEFAULT 0,
+    FIRSTNAME            VARCHAR(255),
+    GENDER               VARCHAR(255),
+    HEIGHT               INTEGER,
+    LASTNAME             VARCHAR(255),
+    PASSWORD             VARCHAR(255),
+    POINTS               INTEGER,
+    SALT                 VARCHAR(255),
+    USERNAME             VARCHAR(255) UNIQUE,
+    WEIGHT               INTEGER,
+    VERIFICATIONTOKEN_ID BIGINT,
+    PRIMARY KEY (ID)
+);
+
+CREATE TABLE Booze_Alcohol (
+    ID         BIGINT NOT NULL,
+    AMOUNT     INTEGER,
+    CATEGORY   VARCHAR(255),
+    ISARCHIVED TINYINT(1) DEFAULT 0,
+    NAME       VARCHAR(255),
+    PERCENTAGE FLOAT,
+    TYPE       VARCHAR(255),
+    USER_ID    BIGINT,
+    PRIMARY KEY (ID)
+);
+
+CREATE TABLE Booze_Drink (
+    ID         BIGINT NOT NULL,
+    DRANKDATE  DATETIME,
+    LATITUDE   DECIMAL(38),
+    LONGITUDE  DECIMAL(38),
+    ALCOHOL_ID BIGINT,
+    USER_ID    BIGINT,
+    PRIMARY KEY (ID)
+);
+
+CREATE TABLE Booze_ChallengeTemplate (
+    ID      BIGINT NOT NULL,
+    AMOUNT  INTEGER,
+    CONTENT VARCHAR(255),
+    TYPE    VARCHAR(255),
+    PRIMARY KEY (ID)
+);
+
+CREATE TABLE Booze_Challenges (
+    ID          BIGINT NOT NULL,
+    createDate  DATE,
+    SUCCESS     TINYINT(1) DEFAULT 0,
+    TEMPLATE_ID BIGINT,
+    USER_ID     BIGINT,
+    PRIMARY KEY (ID)
+);
+
+CREATE TABLE Booze_User_Booze_Challenges (
+    User_ID       BIGINT NOT NULL,
+    challenges_ID BIGINT NOT NULL,
+    PRIMARY KEY (User_ID, challenges_ID)
+);
+
+CREATE TABLE Booze_FavouriteAlcohol (
+    User_ID              BIGINT NOT NULL,
+    favouriteAlcohols_ID BIGINT NOT NULL,
+    PRIMARY KEY (User_ID, favouriteAlcohols_ID)
+);
+
+CREATE TABLE Challenge_PARAMETER (
+    Challenge_ID BIGINT,
+    PARAMETER    INTEGER
+);
+
+ALTER TABLE Booze_User ADD CONSTRAINT FK_Booze_User_VERIFICATIONTOKEN_ID
+    FOREIGN KEY (VERIFICATIONTOKEN_ID) REFERENCES Booze_VerificationToken (ID);
+ALTER TABLE Booze_Drink ADD CONSTRAINT FK_Booze_Drink_USER_ID
+    FOREIGN KEY (USER_ID) REFERENCES Booze_User (ID);
+ALTER TABLE Booze_Drink ADD CONSTRAINT FK_Booze_Drink_ALCOHOL_ID
+    FOREIGN KEY (ALCOHOL_ID) REFERENCES Booze_Alcohol (ID);
+ALTER TABLE Booze_Alcohol ADD CONSTRAINT FK_Booze_Alcohol_USER_ID
+    FOREIGN KEY (USER_ID) REFERENCES Booze_User (ID);
+ALTER TABLE Booze_Challenges ADD CONSTRAINT FK_Booze_Challenges_USER_ID
+    FOREIGN KEY (USER_ID) REFERENCES Booze_User (ID);
+ALTER TABLE Booze_Challenges ADD CONSTRAINT FK_Booze_Challenges_TEMPLATE_ID
+    FOREIGN KEY (TEMPLATE_ID) REFERENCES Booze_ChallengeTemplate (ID);
+ALTER TABLE Booze_User_Booze_Challenges ADD CONSTRAINT FK_Booze_User_Booze_Challenges_challenges_ID
+    FOREIGN KEY (challenges_ID) REFERENCES Booze_Challenges (ID);
+ALTER TABLE Booze_User_Booze_Challenges ADD CONSTRAINT FK_Booze_User_Booze_Challenges_User_ID
+    FOREIGN KEY (User_ID) REFERENCES Booze_User (ID);
+ALTER TABLE Booze_FavouriteAlcohol ADD CONSTRAINT FK_Booze_FavouriteAlcohol_User_ID
+    FOREIGN KEY (User_ID) REFERENCES Booze_User (ID);
+ALTER TABLE Booze_FavouriteAlcohol ADD CONSTRAINT FK_Booze_FavouriteAlcohol_favouriteAlcohols_ID
+    FOREIGN KEY (favouriteAlcohols_ID) REFERENCES Booze_Alcohol (ID);
+ALTER TABLE Challenge_PARAMETER ADD CONSTRAINT FK_Challenge_PARAMETER_Challenge_ID
+    FOREIGN KEY (Challenge_ID) REFERENCES Booze_Challenges (ID);
+
+-- the ids of every entity are generated by the table sequence of EclipseLink
+CREATE TABLE SEQUENCE (
+    SEQ_NAME  VARCHAR(50) NOT NULL,
+    SEQ_COUNT DECIMAL(38),
+    PRIMARY KEY (SEQ_NAME)
+);
+INSERT INTO SEQUENCE (SEQ_NAME, SEQ_COUNT) VALUES ('SEQ_GEN', 0);
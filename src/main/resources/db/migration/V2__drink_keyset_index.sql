@@ -0,0 +1,2 @@
+-- The keyset pagination of GET /manage/drinks reads the drinks of a user ordered by (drankDate, id).
+CREATE INDEX INDEX_Booze_Drink_USER_ID_DRANKDATE_ID ON Booze_Drink (USER_ID, DRANKDATE, ID);
@@ -0,0 +1,15 @@
+-- The change log of the drinks of every user, read by GET /manage/drinks/sync.
+ALTER TABLE Booze_User ADD COLUMN DRINKCHANGESEQUENCE BIGINT DEFAULT 0;
+
+CREATE TABLE Booze_DrinkChange (
+    ID       BIGINT NOT NULL,
+    DRINKID  BIGINT,
+    REMOVED  TINYINT(1) DEFAULT 0,
+    SEQUENCE BIGINT,
+    USER_ID  BIGINT,
+    PRIMARY KEY (ID)
+);
+
+ALTER TABLE Booze_DrinkChange ADD CONSTRAINT FK_Booze_DrinkChange_USER_ID
+    FOREIGN KEY (USER_ID) REFERENCES Booze_User (ID);
+CREATE INDEX INDEX_Booze_DrinkChange_USER_ID_SEQUENCE ON Booze_DrinkChange (USER_ID, SEQUENCE);
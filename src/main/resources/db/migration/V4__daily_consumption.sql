@@ -0,0 +1,19 @@
+-- The per-user daily consumption rollup, maintained on every drink write.
+-- The rollup of the existing drinks is filled by starting the server once with the argument "rollup",
+-- the days depend on the time zone of the server and are not calculated here.
+CREATE TABLE Booze_DailyConsumption (
+    ID            BIGINT NOT NULL,
+    BEERCOUNT     INTEGER,
+    COCKTAILCOUNT INTEGER,
+    DAY           DATE,
+    DRINKCOUNT    INTEGER,
+    GRAMS         DOUBLE,
+    LIQUORCOUNT   INTEGER,
+    WINECOUNT     INTEGER,
+    USER_ID       BIGINT,
+    PRIMARY KEY (ID)
+);
+
+ALTER TABLE Booze_DailyConsumption ADD CONSTRAINT UNQ_Booze_DailyConsumption_0 UNIQUE (USER_ID, DAY);
+ALTER TABLE Booze_DailyConsumption ADD CONSTRAINT FK_Booze_DailyConsumption_USER_ID
+    FOREIGN KEY (USER_ID) REFERENCES Booze_User (ID);
@@ -0,0 +1,14 @@
+-- The emails that still have to be sent by the mail dispatcher.
+CREATE TABLE Booze_MailOutbox (
+    ID          BIGINT NOT NULL,
+    ATTEMPTS    INTEGER,
+    BODY        VARCHAR(4000),
+    CREATED     DATETIME,
+    LASTERROR   VARCHAR(1000),
+    NEXTATTEMPT DATETIME,
+    RECIPIENT   VARCHAR(255),
+    SUBJECT     VARCHAR(255),
+    PRIMARY KEY (ID)
+);
+
+CREATE INDEX INDEX_Booze_MailOutbox_NEXTATTEMPT ON Booze_MailOutbox (NEXTATTEMPT);
@@ -0,0 +1,42 @@
+package challenges;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static challenges.Snapshots.challenge;
+import static challenges.Snapshots.weekEndingToday;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MaxDaysEvaluatorTest {
+
+    private final MaxDaysEvaluator evaluator = new MaxDaysEvaluator();
+
+    @Test
+    public void createParametersReturnsDaysThenMaximum() {
+        // 70 drinks in the week are 10 a day, so the maximum is 8
+        List<Integer> parameters = evaluator.createParameters(weekEndingToday(10, 10, 10, 10, 10, 10, 10), new Random(1));
+        assertEquals(2, parameters.size());
+        int days = parameters.get(0);
+        assertTrue(days >= 1 && days <= 5);
+        assertEquals(8, (int) parameters.get(1));
+    }
+
+    @Test
+    public void daysWithAtMostTheMaximumPass() {
+        // 5 days with 1 drink, 2 days with 10 drinks
+        WeeklySnapshot snapshot = weekEndingToday(1, 10, 1, 1, 10, 1, 1);
+        assertTrue(evaluator.isSuccess(challenge(4, 2), snapshot));
+        assertTrue(evaluator.isSuccess(challenge(5, 1), snapshot));
+        assertFalse(evaluator.isSuccess(challenge(6, 2), snapshot));
+    }
+
+    @Test
+    public void heavyDrinkingFails() {
+        WeeklySnapshot snapshot = weekEndingToday(10, 10, 10, 10, 10, 10, 10);
+        assertFalse(evaluator.isSuccess(challenge(1, 2), snapshot));
+    }
+}
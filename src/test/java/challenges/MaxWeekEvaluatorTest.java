@@ -0,0 +1,23 @@
+package challenges;
+
+import org.junit.Test;
+
+import static challenges.Snapshots.challenge;
+import static challenges.Snapshots.weekEndingToday;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MaxWeekEvaluatorTest {
+
+    private final MaxWeekEvaluator evaluator = new MaxWeekEvaluator();
+
+    @Test
+    public void fewerDrinksThanTheLimitPass() {
+        assertTrue(evaluator.isSuccess(challenge(5), weekEndingToday(1, 0, 2, 0, 1, 0, 0)));
+    }
+
+    @Test
+    public void drinksEqualToTheLimitFail() {
+        assertFalse(evaluator.isSuccess(challenge(5), weekEndingToday(1, 0, 2, 0, 1, 1, 0)));
+    }
+}
@@ -0,0 +1,49 @@
+package challenges;
+
+import data.entities.Alcohol;
+import data.entities.Challenge;
+import data.entities.DailyConsumption;
+import data.entities.User;
+import data.enums.AlcoholType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Creates the snapshots and challenges of the evaluator tests.
+ */
+class Snapshots {
+
+    private Snapshots() {
+    }
+
+    /**
+     * Creates the snapshot of a week that ends today with the number of drinks of every day.
+     */
+    static WeeklySnapshot weekEndingToday(int... dailyCounts) {
+        User user = new User();
+        Alcohol beer = new Alcohol(AlcoholType.BEER, "Beer", 5, 500);
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.DAY_OF_MONTH, -(dailyCounts.length - 1));
+        Date start = DailyConsumption.dayOf(cal.getTime());
+        List<DailyConsumption> consumptions = new ArrayList<>();
+        for (int count : dailyCounts) {
+            DailyConsumption consumption = new DailyConsumption(user, DailyConsumption.dayOf(cal.getTime()));
+            for (int i = 0; i < count; i++) {
+                consumption.add(beer, 1);
+            }
+            consumptions.add(consumption);
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return new WeeklySnapshot(user, start, new Date(), consumptions);
+    }
+
+    static Challenge challenge(Integer... parameters) {
+        Challenge challenge = new Challenge();
+        challenge.getParameter().addAll(Arrays.asList(parameters));
+        return challenge;
+    }
+}